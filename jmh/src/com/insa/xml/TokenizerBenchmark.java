@@ -0,0 +1,56 @@
+package com.insa.xml;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measure how the tokenizer scales with the size of the document.
+ * The time per operation must grow linearly with the number of records.
+ * @author Dorian Terbah
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class TokenizerBenchmark
+{
+    @Param({ "1000", "10000", "100000", "500000" })
+    public int records;
+
+    private String xml;
+    private XMLStringTokenizer tokenizer;
+
+    @Setup
+    public void setUp()
+    {
+        // an Employee record is 7 elements
+        this.xml = Workload.RECORDS.generate(7 * this.records + 1);
+        this.tokenizer = new XMLStringTokenizer();
+    }
+
+    @Benchmark
+    public int tokenize()
+    {
+        this.tokenizer.reset(this.xml);
+        int tokens = 0;
+        while (this.tokenizer.next() != XMLTokenizer.END_OF_INPUT)
+        {
+            ++tokens;
+        }
+
+        return tokens;
+    }
+}
@@ -0,0 +1,167 @@
+package com.insa.xml;
+
+/**
+ * The generated documents of the benchmarks. Every kind stresses another part
+ * of the parser and of the tree, at any number of elements.
+ * @author Dorian Terbah
+ */
+public enum Workload
+{
+    /**
+     * One root with many empty children.
+     */
+    WIDE
+    {
+        @Override
+        void generate(StringBuilder builder, int elements)
+        {
+            builder.append("<root>\n");
+            for (int i = 1; i < elements; ++i)
+            {
+                builder.append("\t<item id=\"").append(i).append("\"/>\n");
+            }
+
+            builder.append("</root>");
+        }
+    },
+
+    /**
+     * Chains of nested elements, DEPTH levels each.
+     */
+    DEEP
+    {
+        @Override
+        void generate(StringBuilder builder, int elements)
+        {
+            builder.append("<root>");
+            for (int count = 1; count < elements; count += DEPTH)
+            {
+                int depth = Math.min(DEPTH, elements - count);
+                for (int i = 0; i < depth; ++i)
+                {
+                    builder.append("<level id=\"").append(count + i).append("\">");
+                }
+
+                builder.append("leaf");
+                for (int i = 0; i < depth; ++i)
+                {
+                    builder.append("</level>");
+                }
+            }
+
+            builder.append("</root>");
+        }
+    },
+
+    /**
+     * Elements with ten attributes each.
+     */
+    ATTRIBUTES
+    {
+        @Override
+        void generate(StringBuilder builder, int elements)
+        {
+            builder.append("<root>\n");
+            for (int i = 1; i < elements; ++i)
+            {
+                builder.append("\t<item id=\"").append(i).append('"');
+                for (int k = 0; k < 9; ++k)
+                {
+                    builder.append(" a").append(k).append("=\"value ").append(i % (k + 7)).append('"');
+                }
+
+                builder.append("/>\n");
+            }
+
+            builder.append("</root>");
+        }
+    },
+
+    /**
+     * Elements holding paragraphs of text.
+     */
+    TEXT
+    {
+        @Override
+        void generate(StringBuilder builder, int elements)
+        {
+            builder.append("<root>\n");
+            for (int i = 1; i < elements; ++i)
+            {
+                builder.append("\t<p id=\"").append(i).append("\">");
+                for (int k = 0; k < 8; ++k)
+                {
+                    builder.append("Lorem ipsum dolor sit amet, consectetur adipiscing elit ").append(i + k).append(". ");
+                }
+
+                builder.append("</p>\n");
+            }
+
+            builder.append("</root>");
+        }
+    },
+
+    /**
+     * A Company of Employee records, as the sample of Main.
+     */
+    RECORDS
+    {
+        @Override
+        void generate(StringBuilder builder, int elements)
+        {
+            builder.append("<Company>\n");
+            for (int i = 1; i < elements; i += 7)
+            {
+                builder.append("\t<Employee id=\"").append(i).append("\" salary=\"").append(1000 + i % 9000).append("\">\n")
+                       .append("\t\t<FirstName>Tim</FirstName>\n")
+                       .append("\t\t<LastName>Browne</LastName>\n")
+                       .append("\t\t<Position>CEO</Position>\n")
+                       .append("\t\t<Email>TBrowne@Infoteria.com</Email>\n")
+                       .append("\t\t<Age>").append(20 + i % 45).append("</Age>\n")
+                       .append("\t</Employee>\n");
+            }
+
+            builder.append("</Company>");
+        }
+    };
+
+    private static final int DEPTH = 100;
+
+    /**
+     * Write a document of this kind.
+     * @param builder The output of the document.
+     * @param elements The number of elements of the document, the root included.
+     */
+    abstract void generate(StringBuilder builder, int elements);
+
+    /**
+     * Generate a document of this kind.
+     * @param elements The number of elements of the document, the root included.
+     * @return The document
+     */
+    public String generate(int elements)
+    {
+        StringBuilder builder = new StringBuilder();
+        this.generate(builder, elements);
+        return builder.toString();
+    }
+
+    /**
+     * Get the tag searched by the benchmarks of the queries.
+     * @return A tag of many elements of the document
+     */
+    public String getSearchedTag()
+    {
+        switch (this)
+        {
+            case DEEP:
+                return "level";
+            case TEXT:
+                return "p";
+            case RECORDS:
+                return "Employee";
+            default:
+                return "item";
+        }
+    }
+}
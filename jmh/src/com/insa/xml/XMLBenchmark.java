@@ -0,0 +1,87 @@
+package com.insa.xml;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measure the parse, the queries and the serialization on every generated workload,
+ * at several sizes. A change to XMLParser or XMLNode is checked by running the
+ * benchmarks before and after it, and comparing the scores.
+ * <p>
+ * The build runs them with the GC profiler, which adds the allocation rate and the
+ * bytes allocated per operation to the throughput:
+ * <code>gradle :jmh:jmh -Pjmh="XMLBenchmark -p workload=RECORDS"</code>.
+ * @author Dorian Terbah
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class XMLBenchmark
+{
+    @Param
+    public Workload workload;
+
+    @Param({ "1000", "10000", "100000" })
+    public int elements;
+
+    private XMLParser parser;
+    private String xml;
+    private XMLNode root;
+    private String tag;
+    private String id;
+
+    @Setup
+    public void setUp()
+    {
+        this.parser = XMLParser.getInstance();
+        this.xml = this.workload.generate(this.elements);
+        this.root = this.parser.parse(this.xml);
+        this.tag = this.workload.getSearchedTag();
+        this.id = Integer.toString(this.elements / 2);
+    }
+
+    @Benchmark
+    public XMLNode parse()
+    {
+        return this.parser.parse(this.xml);
+    }
+
+    @Benchmark
+    public List<XMLNode> getElementsByTag()
+    {
+        return this.root.getElementsByTag(this.tag);
+    }
+
+    @Benchmark
+    public List<XMLNode> getElementsByAttribute()
+    {
+        return this.root.getElementsByAttribute("id");
+    }
+
+    @Benchmark
+    public XMLNode getElementById()
+    {
+        return this.root.getElementById(this.id);
+    }
+
+    @Benchmark
+    public String serialize()
+    {
+        return this.root.toString();
+    }
+}
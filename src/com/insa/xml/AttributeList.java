@@ -0,0 +1,183 @@
+package com.insa.xml;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The attributes of a node, kept in insertion order in a flat array.
+ * The names are looked up linearly while they are few, an index from the
+ * names to the positions is only built above a threshold.
+ * @author Dorian Terbah
+ */
+final class AttributeList
+{
+    private static final int INDEX_THRESHOLD = 8;
+    
+    private Attribute[] entries;
+    private int size;
+    private Map<String, Integer> index;
+    
+    AttributeList()
+    {
+        this.entries = new Attribute[2];
+        this.size = 0;
+        this.index = null;
+    }
+    
+    /**
+     * @return The number of attributes
+     */
+    int size()
+    {
+        return this.size;
+    }
+    
+    /**
+     * Get an attribute by its position.
+     * @param position The position of the attribute, in insertion order
+     * @return The attribute
+     */
+    Attribute get(int position)
+    {
+        return this.entries[position];
+    }
+    
+    /**
+     * Get the value of an attribute.
+     * @param name The name of the attribute
+     * @return The value of the attribute if exists, else <code>null</code>
+     */
+    String get(String name)
+    {
+        int position = this.find(name);
+        return position != -1 ? this.entries[position].value : null;
+    }
+    
+    /**
+     * Get the value of an attribute by a linear scan, without the index.
+     * Every field is read once, so the scan ends even when another thread changes
+     * the list: the result is then stale, and must be validated by the caller.
+     * @param name The name of the attribute
+     * @return The value of the attribute if exists, else <code>null</code>
+     */
+    String scan(String name)
+    {
+        Attribute[] entries = this.entries;
+        int size = Math.min(this.size, entries.length);
+        for (int i = 0; i < size; ++i)
+        {
+            Attribute attribute = entries[i];
+            if (attribute != null && attribute.name.equals(name))
+            {
+                return attribute.value;
+            }
+        }
+        
+        return null;
+    }
+    
+    /**
+     * @param name The name of the attribute
+     * @return true if the attribute exists, else false
+     */
+    boolean contains(String name)
+    {
+        return this.find(name) != -1;
+    }
+    
+    /**
+     * Set the value of an attribute. A new attribute is added at the end.
+     * @param name The name of the attribute
+     * @param value The value of the attribute
+     * @return The previous value of the attribute if exists, else <code>null</code>
+     */
+    String put(String name, String value)
+    {
+        int position = this.find(name);
+        if (position != -1)
+        {
+            String previous = this.entries[position].value;
+            this.entries[position] = new Attribute(name, value);
+            return previous;
+        }
+        
+        if (this.size == this.entries.length)
+        {
+            Attribute[] entries = new Attribute[2 * this.size];
+            System.arraycopy(this.entries, 0, entries, 0, this.size);
+            this.entries = entries;
+        }
+        
+        this.entries[this.size] = new Attribute(name, value);
+        if (this.index != null)
+        {
+            this.index.put(name, this.size);
+        }
+        
+        if (++this.size > INDEX_THRESHOLD && this.index == null)
+        {
+            this.buildIndex();
+        }
+        
+        return null;
+    }
+    
+    /**
+     * Remove an attribute.
+     * @param name The name of the attribute
+     * @return The value of the removed attribute if exists, else <code>null</code>
+     */
+    String remove(String name)
+    {
+        int position = this.find(name);
+        if (position == -1)
+        {
+            return null;
+        }
+        
+        String value = this.entries[position].value;
+        System.arraycopy(this.entries, position + 1, this.entries, position, this.size - position - 1);
+        this.entries[--this.size] = null;
+        
+        if (this.index != null)
+        {
+            if (this.size > INDEX_THRESHOLD)
+            {
+                this.buildIndex();
+            } else
+            {
+                this.index = null;
+            }
+        }
+        
+        return value;
+    }
+    
+    private int find(String name)
+    {
+        if (this.index != null)
+        {
+            Integer position = this.index.get(name);
+            return position != null ? position : -1;
+        }
+        
+        for (int i = 0; i < this.size; ++i)
+        {
+            if (this.entries[i].name.equals(name))
+            {
+                return i;
+            }
+        }
+        
+        return -1;
+    }
+    
+    private void buildIndex()
+    {
+        this.index = new HashMap<>(2 * this.size);
+        for (int i = 0; i < this.size; ++i)
+        {
+            this.index.put(this.entries[i].name, i);
+        }
+    }
+}
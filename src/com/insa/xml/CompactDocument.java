@@ -0,0 +1,603 @@
+package com.insa.xml;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A read only document stored in parallel arrays of integers instead of a tree of objects.
+ * A node is an int: its position in document order. The links, the tag names, the texts
+ * and the attributes of all the nodes are held by a few arrays, so a document of millions
+ * of elements costs a few tens of bytes per element, and a walk reads contiguous memory.
+ * <ul>
+ * <li>the tag of a node is the position of its name in a table of names</li>
+ * <li>the texts and the attribute values are ranges of one array of chars</li>
+ * <li>the attributes of a node are the ones between its first attribute and the first
+ * attribute of the next node</li>
+ * </ul>
+ * The document is read with int nodes, with an XMLCursor, or through XMLNode copies
+ * of its elements. It is created by XMLParser.parseCompact, and it can be read by
+ * several threads at once.
+ * @author Dorian Terbah
+ */
+public final class CompactDocument
+{
+    /**
+     * The missing node: the parent of the root, the next sibling of the last child...
+     */
+    public static final int NONE = -1;
+
+    private final int size;
+    private final int[] parents;
+    private final int[] firstChildren;
+    private final int[] nextSiblings;
+    private final int[] tags;
+    private final boolean[] selfClosing;
+
+    // the texts are ranges of chars, the attributes of the node n are [firstAttributes[n], firstAttributes[n + 1])
+    private final int[] textStarts;
+    private final int[] textLengths;
+    private final int[] firstAttributes;
+    private final int[] attributeNames;
+    private final int[] valueStarts;
+    private final int[] valueLengths;
+    private final char[] chars;
+
+    private final String[] names;
+
+    private CompactDocument(Builder builder)
+    {
+        int size = builder.size;
+        int attributeCount = builder.attributeCount;
+        this.size = size;
+
+        // the arrays are trimmed, the document is never changed
+        this.parents = Arrays.copyOf(builder.parents, size);
+        this.firstChildren = Arrays.copyOf(builder.firstChildren, size);
+        this.nextSiblings = Arrays.copyOf(builder.nextSiblings, size);
+        this.tags = Arrays.copyOf(builder.tags, size);
+        this.selfClosing = Arrays.copyOf(builder.selfClosing, size);
+        this.textStarts = Arrays.copyOf(builder.textStarts, size);
+        this.textLengths = Arrays.copyOf(builder.textLengths, size);
+        this.firstAttributes = Arrays.copyOf(builder.firstAttributes, size + 1);
+        this.firstAttributes[size] = attributeCount;
+        this.attributeNames = Arrays.copyOf(builder.attributeNames, attributeCount);
+        this.valueStarts = Arrays.copyOf(builder.valueStarts, attributeCount);
+        this.valueLengths = Arrays.copyOf(builder.valueLengths, attributeCount);
+        this.chars = Arrays.copyOf(builder.chars, builder.charCount);
+        this.names = builder.names.toArray(new String[0]);
+    }
+
+    /**
+     * @return The number of elements of the document
+     */
+    public int size()
+    {
+        return this.size;
+    }
+
+    /**
+     * Get the root of the document, the first top level node.
+     * @return The root
+     */
+    public int getRoot()
+    {
+        return 0;
+    }
+
+    /**
+     * Create a cursor on the root of the document.
+     * @return The cursor
+     */
+    public XMLCursor createCursor()
+    {
+        return new XMLCursor(this);
+    }
+
+    /**
+     * Get the parent of a node.
+     * @param node The node.
+     * @return The parent, NONE for a top level node
+     */
+    public int getParent(int node)
+    {
+        return this.parents[node];
+    }
+
+    /**
+     * Get the first child of a node.
+     * @param node The node.
+     * @return The first child, NONE if the node has no child
+     */
+    public int getFirstChild(int node)
+    {
+        return this.firstChildren[node];
+    }
+
+    /**
+     * Get the next sibling of a node.
+     * @param node The node.
+     * @return The next sibling, NONE for the last child
+     */
+    public int getNextSibling(int node)
+    {
+        return this.nextSiblings[node];
+    }
+
+    /**
+     * Get the tag of a node.
+     * @param node The node.
+     * @return The tag
+     */
+    public String getTag(int node)
+    {
+        return this.names[this.tags[node]];
+    }
+
+    /**
+     * Get the text of a node. A new String is created on every call.
+     * @param node The node.
+     * @return The text, empty if the node has none
+     */
+    public String getText(int node)
+    {
+        return new String(this.chars, this.textStarts[node], this.textLengths[node]);
+    }
+
+    /**
+     * @param node The node.
+     * @return true if the node is self closing, else false
+     */
+    public boolean isSelfClosing(int node)
+    {
+        return this.selfClosing[node];
+    }
+
+    /**
+     * @param node The node.
+     * @return The number of attributes of the node
+     */
+    public int getAttributeCount(int node)
+    {
+        return this.firstAttributes[node + 1] - this.firstAttributes[node];
+    }
+
+    /**
+     * Get the name of an attribute of a node.
+     * @param node The node.
+     * @param index The index of the attribute, in the order of the document.
+     * @return The name of the attribute
+     */
+    public String getAttributeName(int node, int index)
+    {
+        return this.names[this.attributeNames[this.firstAttributes[node] + index]];
+    }
+
+    /**
+     * Get the value of an attribute of a node.
+     * @param node The node.
+     * @param index The index of the attribute, in the order of the document.
+     * @return The value of the attribute
+     */
+    public String getAttributeValue(int node, int index)
+    {
+        int attribute = this.firstAttributes[node] + index;
+        return new String(this.chars, this.valueStarts[attribute], this.valueLengths[attribute]);
+    }
+
+    /**
+     * Get the value of an attribute of a node.
+     * @param node The node.
+     * @param attributeName The name of the attribute.
+     * @return The value of the attribute, <code>null</code> if the node has no such attribute
+     */
+    public String getAttribute(int node, String attributeName)
+    {
+        for (int i = this.firstAttributes[node]; i < this.firstAttributes[node + 1]; ++i)
+        {
+            if (this.names[this.attributeNames[i]].equals(attributeName))
+            {
+                return new String(this.chars, this.valueStarts[i], this.valueLengths[i]);
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Get the elements of the document with a tag, by one scan of the tags.
+     * @param tag The tag of the elements.
+     * @return The elements, in document order
+     */
+    public int[] getElementsByTag(String tag)
+    {
+        int symbol = this.findName(tag);
+        int[] nodes = new int[16];
+        int count = 0;
+        for (int node = 0; symbol != NONE && node < this.size; ++node)
+        {
+            if (this.tags[node] == symbol)
+            {
+                if (count == nodes.length)
+                {
+                    nodes = Arrays.copyOf(nodes, 2 * count);
+                }
+
+                nodes[count++] = node;
+            }
+        }
+
+        return Arrays.copyOf(nodes, count);
+    }
+
+    /**
+     * Get the elements of the document which have an attribute, by one scan of the attributes.
+     * @param attributeName The name of the attribute.
+     * @return The elements, in document order
+     */
+    public int[] getElementsByAttribute(String attributeName)
+    {
+        int symbol = this.findName(attributeName);
+        int[] nodes = new int[16];
+        int count = 0;
+        int node = 0;
+        for (int i = 0; symbol != NONE && i < this.attributeNames.length; ++i)
+        {
+            if (this.attributeNames[i] == symbol)
+            {
+                // the node of the attribute is the last one whose attributes start before it
+                while (this.firstAttributes[node + 1] <= i)
+                {
+                    ++node;
+                }
+
+                if (count == 0 || nodes[count - 1] != node)
+                {
+                    if (count == nodes.length)
+                    {
+                        nodes = Arrays.copyOf(nodes, 2 * count);
+                    }
+
+                    nodes[count++] = node;
+                }
+            }
+        }
+
+        return Arrays.copyOf(nodes, count);
+    }
+
+    /**
+     * Get the first element of the document whose "id" attribute has a value.
+     * @param id The value of the attribute.
+     * @return The element, NONE if there is no such element
+     */
+    public int getElementById(String id)
+    {
+        int symbol = this.findName("id");
+        int node = 0;
+        for (int i = 0; symbol != NONE && i < this.attributeNames.length; ++i)
+        {
+            if (this.attributeNames[i] == symbol && this.valueLengths[i] == id.length()
+                    && this.matches(this.valueStarts[i], id))
+            {
+                while (this.firstAttributes[node + 1] <= i)
+                {
+                    ++node;
+                }
+
+                return node;
+            }
+        }
+
+        return NONE;
+    }
+
+    /**
+     * Copy a node and its descendants into a tree of XMLNode.
+     * The copy doesn't change the document, and the document doesn't keep the copy.
+     * @param node The node.
+     * @return The copy of the node, without parent nor siblings
+     */
+    public XMLNode toXMLNode(int node)
+    {
+        int level = 0;
+        for (int parent = this.parents[node]; parent != NONE; parent = this.parents[parent])
+        {
+            ++level;
+        }
+
+        XMLNode root = this.createNode(node, level);
+        XMLNode current = root;
+        int child = this.firstChildren[node];
+        while (child != NONE)
+        {
+            XMLNode copy = this.createNode(child, current.level + 1);
+            current.appendChild(copy);
+            if (this.firstChildren[child] != NONE)
+            {
+                current = copy;
+                child = this.firstChildren[child];
+                continue;
+            }
+
+            // go up to the first ancestor with a next sibling, without leaving the copied node
+            while (this.nextSiblings[child] == NONE && child != node)
+            {
+                child = this.parents[child];
+                current = current.getParent();
+            }
+
+            child = child == node ? NONE : this.nextSiblings[child];
+        }
+
+        return root;
+    }
+
+    /**
+     * Copy the whole document into a tree of XMLNode.
+     * @return The first top level node, linked to the next ones
+     */
+    public XMLNode toXMLNode()
+    {
+        XMLNode root = null, last = null;
+        for (int node = 0; node != NONE; node = this.nextSiblings[node])
+        {
+            XMLNode copy = this.toXMLNode(node);
+            if (root == null)
+            {
+                root = copy;
+            } else
+            {
+                last.setNextSibling(copy);
+            }
+
+            last = copy;
+        }
+
+        return root;
+    }
+
+    private XMLNode createNode(int node, int level)
+    {
+        XMLNode copy = new XMLNode(this.selfClosing[node], level);
+        copy.setTag(this.getTag(node));
+        copy.setText(this.getText(node));
+        for (int i = 0; i < this.getAttributeCount(node); ++i)
+        {
+            copy.setAttribute(this.getAttributeName(node, i), this.getAttributeValue(node, i));
+        }
+
+        return copy;
+    }
+
+    private int findName(String name)
+    {
+        for (int i = 0; i < this.names.length; ++i)
+        {
+            if (this.names[i].equals(name))
+            {
+                return i;
+            }
+        }
+
+        return NONE;
+    }
+
+    private boolean matches(int start, String value)
+    {
+        for (int i = 0; i < value.length(); ++i)
+        {
+            if (this.chars[start + i] != value.charAt(i))
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Build a CompactDocument from the events of the parser.
+     */
+    static final class Builder implements XMLHandler
+    {
+        private int size;
+        private int[] parents;
+        private int[] firstChildren;
+        private int[] nextSiblings;
+        private int[] tags;
+        private boolean[] selfClosing;
+        private int[] textStarts;
+        private int[] textLengths;
+        private int[] firstAttributes;
+
+        private int attributeCount;
+        private int[] attributeNames;
+        private int[] valueStarts;
+        private int[] valueLengths;
+
+        private char[] chars;
+        private int charCount;
+
+        private final Map<String, Integer> symbols;
+        private final List<String> names;
+
+        // the open elements and their last child
+        private int[] stack;
+        private int[] lastChildren;
+        private int depth;
+        private int lastRoot;
+
+        Builder()
+        {
+            this.size = 0;
+            this.parents = new int[256];
+            this.firstChildren = new int[256];
+            this.nextSiblings = new int[256];
+            this.tags = new int[256];
+            this.selfClosing = new boolean[256];
+            this.textStarts = new int[256];
+            this.textLengths = new int[256];
+            this.firstAttributes = new int[256];
+            this.attributeCount = 0;
+            this.attributeNames = new int[256];
+            this.valueStarts = new int[256];
+            this.valueLengths = new int[256];
+            this.chars = new char[4096];
+            this.charCount = 0;
+            this.symbols = new HashMap<>();
+            this.names = new ArrayList<>();
+            this.stack = new int[16];
+            this.lastChildren = new int[16];
+            this.depth = 0;
+            this.lastRoot = NONE;
+        }
+
+        /**
+         * Get the built document.
+         * @return The document
+         */
+        CompactDocument getDocument()
+        {
+            if (this.size == 0)
+            {
+                throw new XMLParsingException("The document has no root element");
+            }
+
+            return new CompactDocument(this);
+        }
+
+        @Override
+        public void startElement(String tag, XMLAttributes attributes, boolean isSelfClosing)
+        {
+            if (this.size == this.parents.length)
+            {
+                this.growNodes();
+            }
+
+            int node = this.size++;
+            int parent = this.depth > 0 ? this.stack[this.depth - 1] : NONE;
+            int previous = this.depth > 0 ? this.lastChildren[this.depth - 1] : this.lastRoot;
+            this.parents[node] = parent;
+            this.firstChildren[node] = NONE;
+            this.nextSiblings[node] = NONE;
+            this.tags[node] = this.symbol(tag);
+            this.selfClosing[node] = isSelfClosing;
+            this.textStarts[node] = 0;
+            this.textLengths[node] = 0;
+            this.firstAttributes[node] = this.attributeCount;
+
+            if (previous != NONE)
+            {
+                this.nextSiblings[previous] = node;
+            } else if (parent != NONE)
+            {
+                this.firstChildren[parent] = node;
+            }
+
+            if (this.depth > 0)
+            {
+                this.lastChildren[this.depth - 1] = node;
+            } else
+            {
+                this.lastRoot = node;
+            }
+
+            for (int i = 0; i < attributes.getLength(); ++i)
+            {
+                if (this.attributeCount == this.attributeNames.length)
+                {
+                    int length = 2 * this.attributeCount;
+                    this.attributeNames = Arrays.copyOf(this.attributeNames, length);
+                    this.valueStarts = Arrays.copyOf(this.valueStarts, length);
+                    this.valueLengths = Arrays.copyOf(this.valueLengths, length);
+                }
+
+                String value = attributes.getValue(i);
+                this.attributeNames[this.attributeCount] = this.symbol(attributes.getName(i));
+                this.valueStarts[this.attributeCount] = this.append(value);
+                this.valueLengths[this.attributeCount] = value.length();
+                ++this.attributeCount;
+            }
+
+            if (this.depth == this.stack.length)
+            {
+                this.stack = Arrays.copyOf(this.stack, 2 * this.depth);
+                this.lastChildren = Arrays.copyOf(this.lastChildren, 2 * this.depth);
+            }
+
+            this.stack[this.depth] = node;
+            this.lastChildren[this.depth] = NONE;
+            ++this.depth;
+        }
+
+        @Override
+        public void text(String text)
+        {
+            // as in a tree of XMLNode, a node keeps its first text
+            if (this.depth > 0)
+            {
+                int node = this.stack[this.depth - 1];
+                if (this.textLengths[node] == 0)
+                {
+                    this.textStarts[node] = this.append(text);
+                    this.textLengths[node] = text.length();
+                }
+            }
+        }
+
+        @Override
+        public void endElement(String tag)
+        {
+            if (this.depth > 0)
+            {
+                --this.depth;
+            }
+        }
+
+        private int symbol(String name)
+        {
+            Integer symbol = this.symbols.get(name);
+            if (symbol == null)
+            {
+                symbol = this.names.size();
+                this.symbols.put(name, symbol);
+                this.names.add(name);
+            }
+
+            return symbol;
+        }
+
+        /**
+         * Append a String to the chars.
+         * @return The position of the String in the chars
+         */
+        private int append(String s)
+        {
+            int start = this.charCount;
+            if (start + s.length() > this.chars.length)
+            {
+                this.chars = Arrays.copyOf(this.chars, Math.max(2 * this.chars.length, start + s.length()));
+            }
+
+            s.getChars(0, s.length(), this.chars, start);
+            this.charCount += s.length();
+            return start;
+        }
+
+        private void growNodes()
+        {
+            int length = 2 * this.size;
+            this.parents = Arrays.copyOf(this.parents, length);
+            this.firstChildren = Arrays.copyOf(this.firstChildren, length);
+            this.nextSiblings = Arrays.copyOf(this.nextSiblings, length);
+            this.tags = Arrays.copyOf(this.tags, length);
+            this.selfClosing = Arrays.copyOf(this.selfClosing, length);
+            this.textStarts = Arrays.copyOf(this.textStarts, length);
+            this.textLengths = Arrays.copyOf(this.textLengths, length);
+            this.firstAttributes = Arrays.copyOf(this.firstAttributes, length + 1);
+        }
+    }
+}
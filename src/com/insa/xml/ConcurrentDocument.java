@@ -0,0 +1,440 @@
+package com.insa.xml;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * A tree of XMLNode shared by many threads which read it often and change it rarely.
+ * The changes run one at a time under the write lock. The lookups take no lock: they
+ * answer from a snapshot of the structure of the tree (its nodes in document order, the
+ * nodes of each tag and of each id, the children of each node) which is never changed,
+ * then check that no change happened meanwhile. A change drops the snapshot, and the
+ * first lookup after it builds the next one under the read lock. A lookup which sees
+ * a change, or no snapshot, runs again under the read lock, so it never returns a
+ * half changed tree, and since the lookups rarely hold the read lock, they never hold
+ * a change back for long.
+ * <p>
+ * The nodes returned by the lookups are the nodes of the tree: they must be read and
+ * changed through the document, as with getAttribute(node, name), not directly.
+ * The lists returned by the document are copies.
+ * @author Dorian Terbah
+ */
+public class ConcurrentDocument
+{
+    private final XMLNode root;
+
+    // write locked during each change, validated by the optimistic reads
+    private final StampedLock lock;
+
+    // the structure of the tree since the last change, null until a lookup builds it
+    private volatile Snapshot snapshot;
+
+    /**
+     * Share a tree. A lazy tree is read entirely first, so the lookups never read the source.
+     * The tree must not be used directly anymore.
+     * @param root The root of the tree.
+     */
+    public ConcurrentDocument(XMLNode root)
+    {
+        load(root);
+        this.root = root;
+        this.lock = new StampedLock();
+        this.snapshot = null;
+        this.order();
+    }
+
+    /**
+     * Run a lookup on the tree under the read lock.
+     * @param <T> The type of the result
+     * @param query The lookup, it must not change the tree and must not keep any list of the tree.
+     * @return The result of the lookup
+     */
+    public <T> T read(Function<XMLNode, T> query)
+    {
+        long stamp = this.lock.readLock();
+        try
+        {
+            return query.apply(this.root);
+        } finally
+        {
+            this.lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Change the tree, while no other change nor lookup under lock is running.
+     * @param edit The change of the tree.
+     */
+    public void write(Consumer<XMLNode> edit)
+    {
+        long stamp = this.lock.writeLock();
+        try
+        {
+            edit.accept(this.root);
+        } finally
+        {
+            this.snapshot = null;
+            this.order();
+            this.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Run a lookup on the snapshot of the tree: optimistically first, then under
+     * the read lock if a change happened meanwhile or if there is no snapshot yet.
+     * @param query The lookup, it can read the fields of the nodes but not their lists
+     * @return The result of the lookup
+     */
+    private <T> T lookup(Function<Snapshot, T> query)
+    {
+        long stamp = this.lock.tryOptimisticRead();
+        Snapshot snapshot = this.snapshot;
+        if (stamp != 0 && snapshot != null)
+        {
+            try
+            {
+                T result = query.apply(snapshot);
+                if (this.lock.validate(stamp))
+                {
+                    return result;
+                }
+            } catch (RuntimeException e)
+            {
+                // a read of a node which sees a change in progress can fail, it is run again below
+            }
+        }
+
+        stamp = this.lock.readLock();
+        try
+        {
+            return query.apply(this.snapshot());
+        } finally
+        {
+            this.lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Get the snapshot of the tree, built if a change dropped it. The read lock must be held.
+     */
+    private Snapshot snapshot()
+    {
+        Snapshot snapshot = this.snapshot;
+        if (snapshot == null)
+        {
+            // the readers which find no snapshot wait for the first one to build it
+            synchronized (this.lock)
+            {
+                snapshot = this.snapshot;
+                if (snapshot == null)
+                {
+                    snapshot = new Snapshot(this.root);
+                    this.snapshot = snapshot;
+                }
+            }
+        }
+
+        return snapshot;
+    }
+
+    /**
+     * Retrieve all of the nodes with a specific tag, see XMLNode.getElementsByTag.
+     * @param tag The tag of the researched nodes
+     * @return A new list of the nodes, in document order
+     */
+    public List<XMLNode> getElementsByTag(String tag)
+    {
+        return this.lookup(snapshot -> snapshot.getElementsByTag(tag));
+    }
+
+    /**
+     * Get the nodes with an attribute, see XMLNode.getElementsByAttribute.
+     * @param attributeName The name of the attribute.
+     * @return A new list of the nodes, in document order
+     */
+    public List<XMLNode> getElementsByAttribute(String attributeName)
+    {
+        return this.lookup(snapshot -> snapshot.getElementsByAttribute(attributeName, null));
+    }
+
+    /**
+     * Get the nodes with a value of an attribute, see XMLNode.getElementsByAttribute.
+     * @param attributeName The name of the attribute.
+     * @param attributeValue The value of the attribute.
+     * @return A new list of the nodes, in document order
+     */
+    public List<XMLNode> getElementsByAttribute(String attributeName, String attributeValue)
+    {
+        return this.lookup(snapshot -> snapshot.getElementsByAttribute(attributeName, attributeValue));
+    }
+
+    /**
+     * Get a node by its id.
+     * @param id The value of the id
+     * @return The node with the id, <code>null</code> if there is none
+     */
+    public XMLNode getElementById(String id)
+    {
+        return this.lookup(snapshot -> snapshot.ids.get(id));
+    }
+
+    /**
+     * Get the value of an attribute of a node of the tree.
+     * @param node The node.
+     * @param attributeName The name of the attribute.
+     * @return The value of the attribute if exists, else <code>null</code>
+     */
+    public String getAttribute(XMLNode node, String attributeName)
+    {
+        long stamp = this.lock.tryOptimisticRead();
+        if (stamp != 0)
+        {
+            try
+            {
+                String value = scan(node, attributeName);
+                if (this.lock.validate(stamp))
+                {
+                    return value;
+                }
+            } catch (RuntimeException e)
+            {
+                // a read which sees a change in progress can fail, it is run again below
+            }
+        }
+
+        return this.read(root -> node.getAttribute(attributeName));
+    }
+
+    /**
+     * Get the text of a node of the tree.
+     * @param node The node.
+     * @return The text of the node
+     */
+    public String getText(XMLNode node)
+    {
+        long stamp = this.lock.tryOptimisticRead();
+        if (stamp != 0)
+        {
+            String text = node.getText();
+            if (this.lock.validate(stamp))
+            {
+                return text;
+            }
+        }
+
+        return this.read(root -> node.getText());
+    }
+
+    /**
+     * Get the children of a node of the tree.
+     * @param node The node.
+     * @return A new list of the children
+     */
+    public List<XMLNode> getChildren(XMLNode node)
+    {
+        XMLNode[] children = this.lookup(snapshot -> snapshot.children.get(node));
+        if (children == null)
+        {
+            // the node is not in the tree anymore
+            return this.read(root -> new ArrayList<>(node.getChildren()));
+        }
+
+        return new ArrayList<>(Arrays.asList(children));
+    }
+
+    /**
+     * Set the value of an attribute of a node of the tree.
+     * @param node The node.
+     * @param attributeName The name of the attribute.
+     * @param attributeValue The new value of the attribute.
+     */
+    public void setAttribute(XMLNode node, String attributeName, String attributeValue)
+    {
+        this.write(root -> node.setAttribute(attributeName, attributeValue));
+    }
+
+    /**
+     * Remove an attribute of a node of the tree.
+     * @param node The node.
+     * @param attributeName The name of the attribute.
+     * @return The value of the removed attribute if it exists, else <code>null</code>
+     */
+    public String removeAttribute(XMLNode node, String attributeName)
+    {
+        String[] previous = new String[1];
+        this.write(root -> previous[0] = node.removeAttribute(attributeName));
+        return previous[0];
+    }
+
+    /**
+     * Set the text of a node of the tree.
+     * @param node The node.
+     * @param text The new text.
+     */
+    public void setText(XMLNode node, String text)
+    {
+        this.write(root -> node.setText(text));
+    }
+
+    /**
+     * Append a new child to a node of the tree.
+     * @param parent The node of the tree.
+     * @param child The new child, it must not be in a tree.
+     */
+    public void appendChild(XMLNode parent, XMLNode child)
+    {
+        if (child.getParent() != null || child.next() != null || child.previous() != null)
+        {
+            throw new IllegalArgumentException("The child is already in a tree");
+        }
+
+        load(child);
+        this.write(root -> {
+            // a node appended to its own descendant would make a cycle
+            for (XMLNode node = parent; node != null; node = node.getParent())
+            {
+                if (node == child)
+                {
+                    throw new IllegalArgumentException("The child is an ancestor of the parent");
+                }
+            }
+
+            parent.appendChild(child);
+        });
+    }
+
+    /**
+     * Remove the children of a node of the tree according to their tag.
+     * @param parent The node of the tree.
+     * @param tag The tag of the nodes to remove.
+     * @return The removed children
+     */
+    public List<XMLNode> removeChildrenByTag(XMLNode parent, String tag)
+    {
+        List<XMLNode> removed = new ArrayList<>();
+        this.write(root -> removed.addAll(parent.removeChildrenByTag(tag)));
+        return removed;
+    }
+
+    @Override
+    public String toString()
+    {
+        // the writer walks the lists of the nodes: a change which runs meanwhile
+        // fails the validation, as for the lookups on the snapshot
+        return this.lookup(snapshot -> this.root.toString());
+    }
+
+    /**
+     * Read a lazy tree entirely, so the reads never change its nodes.
+     */
+    private static void load(XMLNode root)
+    {
+        Iterator<XMLNode> nodes = root.iterator();
+        while (nodes.hasNext())
+        {
+            nodes.next().getTag();
+        }
+    }
+
+    /**
+     * Read an attribute of a node without changing it, even if another thread does.
+     */
+    private static String scan(XMLNode node, String attributeName)
+    {
+        AttributeList attributes = node.getAttributeList();
+        return attributes != null ? attributes.scan(attributeName) : null;
+    }
+
+    /**
+     * Put the index of the tree in order, so the lookups under read lock only read it.
+     */
+    private void order()
+    {
+        DocumentIndex index = this.root.getIndex();
+        if (index != null)
+        {
+            index.order();
+        }
+    }
+
+    /**
+     * The structure of the tree between two changes. It is built under the read lock
+     * and never changed, so the lookups can walk it while a change runs: the change
+     * fails their validation.
+     */
+    private static final class Snapshot
+    {
+        private static final XMLNode[] NO_NODES = new XMLNode[0];
+
+        // the nodes in document order, as XMLNode.stream walks them
+        private final XMLNode[] nodes;
+        private final Map<String, XMLNode[]> tags;
+        private final Map<String, XMLNode> ids;
+        private final Map<XMLNode, XMLNode[]> children;
+
+        Snapshot(XMLNode root)
+        {
+            List<XMLNode> nodes = new ArrayList<>();
+            Map<String, List<XMLNode>> tags = new HashMap<>();
+            this.ids = new HashMap<>();
+            this.children = new IdentityHashMap<>();
+
+            Iterator<XMLNode> iterator = root.iterator();
+            while (iterator.hasNext())
+            {
+                XMLNode node = iterator.next();
+                nodes.add(node);
+                tags.computeIfAbsent(node.getTag(), tag -> new ArrayList<>()).add(node);
+
+                String id = node.getAttribute("id");
+                if (id != null)
+                {
+                    this.ids.putIfAbsent(id, node);
+                }
+
+                List<XMLNode> children = node.getChildren();
+                this.children.put(node, children.isEmpty() ? NO_NODES : children.toArray(NO_NODES));
+            }
+
+            this.nodes = nodes.toArray(NO_NODES);
+            this.tags = new HashMap<>();
+            for (Map.Entry<String, List<XMLNode>> entry : tags.entrySet())
+            {
+                this.tags.put(entry.getKey(), entry.getValue().toArray(NO_NODES));
+            }
+        }
+
+        List<XMLNode> getElementsByTag(String tag)
+        {
+            XMLNode[] nodes = this.tags.get(tag);
+            return nodes != null ? new ArrayList<>(Arrays.asList(nodes)) : new ArrayList<>();
+        }
+
+        /**
+         * Get the nodes with an attribute, or with a value of the attribute.
+         * The attributes are read from the nodes, the result must be validated.
+         */
+        List<XMLNode> getElementsByAttribute(String attributeName, String value)
+        {
+            List<XMLNode> nodes = new ArrayList<>();
+            for (XMLNode node : this.nodes)
+            {
+                String current = scan(node, attributeName);
+                if (current != null && (value == null || value.equals(current)))
+                {
+                    nodes.add(node);
+                }
+            }
+
+            return nodes;
+        }
+    }
+}
@@ -0,0 +1,379 @@
+package com.insa.xml;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Index of the nodes of a document by their tag, and by the values of some attributes.
+ * The nodes of a key are kept in document order as long as the nodes are appended
+ * at the end of the document, which is the case during a parse. A change in the middle
+ * of the document only marks the key as unordered, and its nodes are put back in order
+ * by the next lookup of the key.
+ * The index is owned by the root of the document, and every indexed node refers to it.
+ * @author Dorian Terbah
+ */
+final class DocumentIndex
+{
+    private final XMLNode root;
+
+    // null until the tags are indexed
+    private Map<String, Set<XMLNode>> tags;
+
+    // attribute name -> attribute value -> nodes
+    private final Map<String, Map<String, Set<XMLNode>>> attributes;
+
+    // the node sets to put back in document order, compared by identity
+    private final Set<Set<XMLNode>> unordered;
+
+    DocumentIndex(XMLNode root)
+    {
+        this.root = root;
+        this.tags = null;
+        this.attributes = new HashMap<>();
+        this.unordered = Collections.newSetFromMap(new IdentityHashMap<>());
+    }
+
+    /**
+     * Get the root of the indexed document.
+     * @return The first top level node
+     */
+    XMLNode getRoot()
+    {
+        return this.root;
+    }
+
+    /**
+     * Attach the whole document to the index: the root, its top level siblings
+     * and all of their descendants.
+     */
+    void addDocument()
+    {
+        for (XMLNode node = this.root; node != null; node = node.next())
+        {
+            this.add(node);
+        }
+    }
+
+    /**
+     * Start to index the tags of the document.
+     */
+    void indexTags()
+    {
+        if (this.tags == null)
+        {
+            this.tags = new HashMap<>();
+            this.walk(node -> this.put(this.tags, node.getTag(), node, true));
+        }
+    }
+
+    /**
+     * Start to index the values of an attribute of the document.
+     * @param attributeName The name of the attribute.
+     */
+    void indexAttribute(String attributeName)
+    {
+        if (!this.attributes.containsKey(attributeName))
+        {
+            Map<String, Set<XMLNode>> values = new HashMap<>();
+            this.attributes.put(attributeName, values);
+            this.walk(node -> this.put(values, node.getAttribute(attributeName), node, true));
+        }
+    }
+
+    /**
+     * Index a node and its descendants, after the node has been linked into the document.
+     * @param node The new node.
+     */
+    void add(XMLNode node)
+    {
+        boolean isLast = isLast(node);
+        if (node.getChildren().isEmpty())
+        {
+            // a node appended by the parser has no children yet
+            this.put(node, isLast);
+            return;
+        }
+
+        Deque<XMLNode> stack = new ArrayDeque<>();
+        stack.push(node);
+        while (!stack.isEmpty())
+        {
+            XMLNode current = stack.pop();
+            this.put(current, isLast);
+
+            List<XMLNode> children = current.getChildren();
+            for (int i = children.size() - 1; i >= 0; --i)
+            {
+                stack.push(children.get(i));
+            }
+        }
+    }
+
+    /**
+     * Remove a node and its descendants from the index, before the node is unlinked from the document.
+     * @param node The removed node.
+     */
+    void remove(XMLNode node)
+    {
+        Deque<XMLNode> stack = new ArrayDeque<>();
+        stack.push(node);
+        while (!stack.isEmpty())
+        {
+            XMLNode current = stack.pop();
+            if (current.getIndex() != this)
+            {
+                continue;
+            }
+
+            current.setIndex(null);
+            if (this.tags != null)
+            {
+                remove(this.tags, current.getTag(), current);
+            }
+
+            for (Map.Entry<String, Map<String, Set<XMLNode>>> entry : this.attributes.entrySet())
+            {
+                remove(entry.getValue(), current.getAttribute(entry.getKey()), current);
+            }
+
+            for (XMLNode child : current.getChildren())
+            {
+                stack.push(child);
+            }
+        }
+    }
+
+    /**
+     * Move a node from its previous tag to its new tag.
+     * @param node The renamed node.
+     * @param previous The previous tag of the node.
+     */
+    void rename(XMLNode node, String previous)
+    {
+        if (this.tags != null)
+        {
+            remove(this.tags, previous, node);
+            this.put(this.tags, node.getTag(), node, false);
+        }
+    }
+
+    /**
+     * Move a node from the previous value of one of its attributes to the new one.
+     * @param node The changed node.
+     * @param attributeName The name of the changed attribute.
+     * @param previous The previous value, <code>null</code> if the attribute is new
+     * @param value The new value, <code>null</code> if the attribute is removed
+     */
+    void update(XMLNode node, String attributeName, String previous, String value)
+    {
+        Map<String, Set<XMLNode>> values = this.attributes.get(attributeName);
+        if (values != null)
+        {
+            remove(values, previous, node);
+            this.put(values, value, node, false);
+        }
+    }
+
+    /**
+     * Get the nodes of a tag in document order.
+     * @param tag The tag of the researched nodes.
+     * @return A new list of the nodes, <code>null</code> if the tags are not indexed
+     */
+    List<XMLNode> getElementsByTag(String tag)
+    {
+        return this.tags != null ? this.get(this.tags, tag) : null;
+    }
+
+    /**
+     * Get the nodes with a value of an attribute in document order.
+     * @param attributeName The name of the attribute.
+     * @param value The value of the attribute.
+     * @return A new list of the nodes, <code>null</code> if the attribute is not indexed
+     */
+    List<XMLNode> getElementsByAttribute(String attributeName, String value)
+    {
+        Map<String, Set<XMLNode>> values = this.attributes.get(attributeName);
+        return values != null ? this.get(values, value) : null;
+    }
+
+    /**
+     * @param attributeName The name of an attribute.
+     * @return true if the values of the attribute are indexed
+     */
+    boolean isIndexed(String attributeName)
+    {
+        return this.attributes.containsKey(attributeName);
+    }
+
+    /**
+     * Get the first node with a value of an indexed attribute, without copying the nodes.
+     * @param attributeName The name of the indexed attribute.
+     * @param value The value of the attribute.
+     * @return The first node in document order, <code>null</code> if no node has the value
+     */
+    XMLNode getFirstElementByAttribute(String attributeName, String value)
+    {
+        Set<XMLNode> nodes = this.attributes.get(attributeName).get(value);
+        if (nodes == null)
+        {
+            return null;
+        }
+
+        if (this.unordered.contains(nodes))
+        {
+            this.sort();
+        }
+
+        return nodes.isEmpty() ? null : nodes.iterator().next();
+    }
+
+    private List<XMLNode> get(Map<String, Set<XMLNode>> map, String key)
+    {
+        Set<XMLNode> nodes = map.get(key);
+        if (nodes == null)
+        {
+            return new ArrayList<>();
+        }
+
+        if (this.unordered.contains(nodes))
+        {
+            this.sort();
+        }
+
+        return new ArrayList<>(nodes);
+    }
+
+    private void put(XMLNode node, boolean isLast)
+    {
+        if (node.getIndex() == this)
+        {
+            return;
+        }
+
+        node.setIndex(this);
+        if (this.tags != null)
+        {
+            this.put(this.tags, node.getTag(), node, isLast);
+        }
+
+        for (Map.Entry<String, Map<String, Set<XMLNode>>> entry : this.attributes.entrySet())
+        {
+            this.put(entry.getValue(), node.getAttribute(entry.getKey()), node, isLast);
+        }
+    }
+
+    private void put(Map<String, Set<XMLNode>> map, String key, XMLNode node, boolean isLast)
+    {
+        if (key == null)
+        {
+            return;
+        }
+
+        Set<XMLNode> nodes = map.get(key);
+        if (nodes == null)
+        {
+            nodes = new LinkedHashSet<>();
+            map.put(key, nodes);
+        } else if (!isLast && !nodes.isEmpty())
+        {
+            this.unordered.add(nodes);
+        }
+
+        nodes.add(node);
+    }
+
+    private static void remove(Map<String, Set<XMLNode>> map, String key, XMLNode node)
+    {
+        Set<XMLNode> nodes = key != null ? map.get(key) : null;
+        if (nodes != null)
+        {
+            nodes.remove(node);
+            if (nodes.isEmpty())
+            {
+                map.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Put back in document order the nodes changed since the last lookup, so the next
+     * lookups only read the index.
+     */
+    void order()
+    {
+        if (!this.unordered.isEmpty())
+        {
+            this.sort();
+        }
+    }
+
+    /**
+     * Put back in document order all the unordered node sets, in one walk of the document.
+     */
+    private void sort()
+    {
+        for (Set<XMLNode> nodes : this.unordered)
+        {
+            nodes.clear();
+        }
+
+        this.walk(node -> {
+            if (this.tags != null)
+            {
+                this.refill(this.tags.get(node.getTag()), node);
+            }
+
+            for (Map.Entry<String, Map<String, Set<XMLNode>>> entry : this.attributes.entrySet())
+            {
+                String value = node.getAttribute(entry.getKey());
+                if (value != null)
+                {
+                    this.refill(entry.getValue().get(value), node);
+                }
+            }
+        });
+
+        this.unordered.clear();
+    }
+
+    private void refill(Set<XMLNode> nodes, XMLNode node)
+    {
+        if (nodes != null && this.unordered.contains(nodes))
+        {
+            nodes.add(node);
+        }
+    }
+
+    /**
+     * Visit the indexed nodes of the document in document order.
+     */
+    private void walk(Consumer<XMLNode> visitor)
+    {
+        new XMLNodeIterator(this.root, false, node -> node.getIndex() == this).forEachRemaining(visitor);
+    }
+
+    /**
+     * @return true if nothing follows the node in the document
+     */
+    private static boolean isLast(XMLNode node)
+    {
+        for (XMLNode current = node; current != null; current = current.getParent())
+        {
+            if (current.next() != null)
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
@@ -0,0 +1,54 @@
+package com.insa.xml;
+
+import java.util.Arrays;
+
+/**
+ * Send the tokens of a tokenizer to a handler, one event per token.
+ * The tags of the open elements are kept, so an end tag is given the String of its start tag.
+ * @author Dorian Terbah
+ */
+final class EventDispatcher
+{
+    private String[] tags;
+    private int depth;
+
+    EventDispatcher()
+    {
+        this.tags = new String[16];
+        this.depth = 0;
+    }
+
+    /**
+     * Send the current token of a tokenizer to a handler.
+     * @param tokenizer The tokenizer
+     * @param token The type of the current token
+     * @param handler The handler
+     */
+    void dispatch(XMLTokenizer tokenizer, int token, XMLHandler handler)
+    {
+        String tag;
+        switch (token)
+        {
+            case XMLTokenizer.START_TAG:
+                tag = tokenizer.getName();
+                if (this.depth == this.tags.length)
+                {
+                    this.tags = Arrays.copyOf(this.tags, 2 * this.depth);
+                }
+
+                this.tags[this.depth++] = tag;
+                handler.startElement(tag, tokenizer.getAttributes(), tokenizer.isSelfClosing());
+                break;
+            case XMLTokenizer.END_TAG:
+                tag = this.depth > 0 ? tokenizer.getName(this.tags[--this.depth]) : tokenizer.getName();
+                handler.endElement(tag);
+                break;
+            case XMLTokenizer.TEXT:
+                handler.text(tokenizer.getText());
+                break;
+            default:
+                handler.comment(tokenizer.getText());
+                break;
+        }
+    }
+}
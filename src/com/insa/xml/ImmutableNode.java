@@ -0,0 +1,474 @@
+package com.insa.xml;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+/**
+ * An element which never changes: an edit returns a new node, and the unchanged
+ * children are shared by the old and the new node. A node has no link to its parent,
+ * so a subtree can be shared by any number of versions of a document, and the
+ * edit of a deep node only copies the nodes on its path (path copying).
+ * The nodes can be read by any number of threads, without any lock.
+ * @author Dorian Terbah
+ */
+public final class ImmutableNode
+{
+    private static final ImmutableNode[] NO_CHILDREN = new ImmutableNode[0];
+    private static final String[] NO_ATTRIBUTES = new String[0];
+
+    private final String tag;
+    private final String text;
+    private final boolean isSelfClosing;
+
+    // the names and the values of the attributes, one after the other
+    private final String[] attributes;
+    private final ImmutableNode[] children;
+
+    private ImmutableNode(String tag, String text, boolean isSelfClosing, String[] attributes, ImmutableNode[] children)
+    {
+        this.tag = tag;
+        this.text = text;
+        this.isSelfClosing = isSelfClosing;
+        this.attributes = attributes;
+        this.children = children;
+    }
+
+    /**
+     * Create a node without text, attribute nor child.
+     * @param tag The tag of the node.
+     * @return The node
+     */
+    public static ImmutableNode of(String tag)
+    {
+        return new ImmutableNode(tag, "", false, NO_ATTRIBUTES, NO_CHILDREN);
+    }
+
+    /**
+     * Copy a node and its descendants, without recursion. The Strings are shared with the copy.
+     * @param node The copied node.
+     * @return The immutable copy
+     */
+    public static ImmutableNode of(XMLNode node)
+    {
+        // the nodes in document order, then their copies are built from the last one
+        List<XMLNode> nodes = new ArrayList<>();
+        ArrayDeque<XMLNode> stack = new ArrayDeque<>();
+        stack.push(node);
+        while (!stack.isEmpty())
+        {
+            XMLNode current = stack.pop();
+            nodes.add(current);
+            List<XMLNode> children = current.getChildren();
+            for (int i = children.size() - 1; i >= 0; --i)
+            {
+                stack.push(children.get(i));
+            }
+        }
+
+        // the copies of the children are on the stack when their parent is copied
+        ArrayDeque<ImmutableNode> copies = new ArrayDeque<>();
+        for (int i = nodes.size() - 1; i >= 0; --i)
+        {
+            XMLNode current = nodes.get(i);
+            int count = current.getChildren().size();
+            ImmutableNode[] children = count == 0 ? NO_CHILDREN : new ImmutableNode[count];
+            for (int k = 0; k < count; ++k)
+            {
+                children[k] = copies.pop();
+            }
+
+            AttributeList list = current.getAttributeList();
+            String[] attributes = list == null || list.size() == 0 ? NO_ATTRIBUTES : new String[2 * list.size()];
+            for (int k = 0; k < attributes.length / 2; ++k)
+            {
+                attributes[2 * k] = list.get(k).name;
+                attributes[2 * k + 1] = list.get(k).value;
+            }
+
+            copies.push(new ImmutableNode(current.getTag(), current.getText(), current.isSelfClosing(), attributes, children));
+        }
+
+        return copies.pop();
+    }
+
+    /**
+     * Copy the node and its descendants into a tree of XMLNode, which can be changed.
+     * @return The copy, without parent nor siblings
+     */
+    public XMLNode toXMLNode()
+    {
+        XMLNode root = this.createNode(0);
+        ArrayDeque<ImmutableNode> nodes = new ArrayDeque<>();
+        ArrayDeque<XMLNode> copies = new ArrayDeque<>();
+        nodes.push(this);
+        copies.push(root);
+        while (!nodes.isEmpty())
+        {
+            ImmutableNode node = nodes.pop();
+            XMLNode parent = copies.pop();
+            for (ImmutableNode child : node.children)
+            {
+                XMLNode copy = child.createNode(parent.level + 1);
+                parent.appendChild(copy);
+                nodes.push(child);
+                copies.push(copy);
+            }
+        }
+
+        return root;
+    }
+
+    private XMLNode createNode(int level)
+    {
+        XMLNode node = new XMLNode(this.isSelfClosing, level);
+        node.setTag(this.tag);
+        node.setText(this.text);
+        for (int i = 0; i < this.attributes.length; i += 2)
+        {
+            node.setAttribute(this.attributes[i], this.attributes[i + 1]);
+        }
+
+        return node;
+    }
+
+    /**
+     * Get the tag of the current node.
+     * @return The tag of the current node.
+     */
+    public String getTag()
+    {
+        return this.tag;
+    }
+
+    /**
+     * Get the text of the current node.
+     * @return The text of the current node.
+     */
+    public String getText()
+    {
+        return this.text;
+    }
+
+    /**
+     * @return true if the node is an orphan, else false
+     */
+    public boolean isSelfClosing()
+    {
+        return this.isSelfClosing;
+    }
+
+    /**
+     * Get the value of an attribute.
+     * @param attributeName The name of the attribute.
+     * @return The value of the attribute if exists, else <code>null</code>
+     */
+    public String getAttribute(String attributeName)
+    {
+        int position = this.findAttribute(attributeName);
+        return position != -1 ? this.attributes[position + 1] : null;
+    }
+
+    /**
+     * @return The number of attributes of the current node
+     */
+    public int getAttributeCount()
+    {
+        return this.attributes.length / 2;
+    }
+
+    /**
+     * Get the name of an attribute.
+     * @param index The index of the attribute, in insertion order.
+     * @return The name of the attribute
+     */
+    public String getAttributeName(int index)
+    {
+        return this.attributes[2 * index];
+    }
+
+    /**
+     * Get the value of an attribute.
+     * @param index The index of the attribute, in insertion order.
+     * @return The value of the attribute
+     */
+    public String getAttributeValue(int index)
+    {
+        return this.attributes[2 * index + 1];
+    }
+
+    /**
+     * Get the children of the current node.
+     * @return The children, the list can't be changed
+     */
+    public List<ImmutableNode> getChildren()
+    {
+        return Collections.unmodifiableList(Arrays.asList(this.children));
+    }
+
+    /**
+     * Get a child of the current node.
+     * @param index The position of the child.
+     * @return The child
+     */
+    public ImmutableNode getChild(int index)
+    {
+        return this.children[index];
+    }
+
+    /**
+     * Get a descendant of the current node by the positions of the children on its path.
+     * @param path The position of a child of the current node, then of a child of this child...
+     * An empty path is the current node.
+     * @return The descendant
+     */
+    public ImmutableNode getDescendant(int... path)
+    {
+        ImmutableNode node = this;
+        for (int position : path)
+        {
+            node = node.children[position];
+        }
+
+        return node;
+    }
+
+    /**
+     * Retrieve the current node and all of its descendants with a specific tag.
+     * @param tag The tag of the researched nodes
+     * @return The nodes with the specific tag, in document order
+     */
+    public List<ImmutableNode> getElementsByTag(String tag)
+    {
+        List<ImmutableNode> nodes = new ArrayList<>();
+        ArrayDeque<ImmutableNode> stack = new ArrayDeque<>();
+        stack.push(this);
+        while (!stack.isEmpty())
+        {
+            ImmutableNode node = stack.pop();
+            if (node.tag.equals(tag))
+            {
+                nodes.add(node);
+            }
+
+            for (int i = node.children.length - 1; i >= 0; --i)
+            {
+                stack.push(node.children[i]);
+            }
+        }
+
+        return nodes;
+    }
+
+    /**
+     * Get a copy of the current node with another tag.
+     * @param tag The new tag.
+     * @return The new node
+     */
+    public ImmutableNode withTag(String tag)
+    {
+        return new ImmutableNode(tag, this.text, this.isSelfClosing, this.attributes, this.children);
+    }
+
+    /**
+     * Get a copy of the current node with another text.
+     * @param text The new text.
+     * @return The new node
+     */
+    public ImmutableNode withText(String text)
+    {
+        return new ImmutableNode(this.tag, text, this.isSelfClosing, this.attributes, this.children);
+    }
+
+    /**
+     * Get a copy of the current node with another closing state.
+     * @param isSelfClosing The new closing state.
+     * @return The new node
+     */
+    public ImmutableNode withSelfClosing(boolean isSelfClosing)
+    {
+        return new ImmutableNode(this.tag, this.text, isSelfClosing, this.attributes, this.children);
+    }
+
+    /**
+     * Get a copy of the current node with a new value of an attribute. If the attribute doesn't exist, it is added.
+     * @param attributeName The name of the attribute.
+     * @param attributeValue The new value of the attribute.
+     * @return The new node
+     */
+    public ImmutableNode withAttribute(String attributeName, String attributeValue)
+    {
+        int position = this.findAttribute(attributeName);
+        String[] attributes;
+        if (position != -1)
+        {
+            attributes = this.attributes.clone();
+        } else
+        {
+            position = this.attributes.length;
+            attributes = Arrays.copyOf(this.attributes, position + 2);
+            attributes[position] = attributeName;
+        }
+
+        attributes[position + 1] = attributeValue;
+        return new ImmutableNode(this.tag, this.text, this.isSelfClosing, attributes, this.children);
+    }
+
+    /**
+     * Get a copy of the current node without an attribute.
+     * @param attributeName The name of the attribute.
+     * @return The new node, or the current node if it has no such attribute
+     */
+    public ImmutableNode withoutAttribute(String attributeName)
+    {
+        int position = this.findAttribute(attributeName);
+        if (position == -1)
+        {
+            return this;
+        }
+
+        String[] attributes = new String[this.attributes.length - 2];
+        System.arraycopy(this.attributes, 0, attributes, 0, position);
+        System.arraycopy(this.attributes, position + 2, attributes, position, attributes.length - position);
+        return new ImmutableNode(this.tag, this.text, this.isSelfClosing, attributes, this.children);
+    }
+
+    /**
+     * Get a copy of the current node with a child replaced. The other children are shared.
+     * @param index The position of the replaced child.
+     * @param child The new child.
+     * @return The new node
+     */
+    public ImmutableNode withChild(int index, ImmutableNode child)
+    {
+        if (this.children[index] == child)
+        {
+            return this;
+        }
+
+        ImmutableNode[] children = this.children.clone();
+        children[index] = child;
+        return new ImmutableNode(this.tag, this.text, this.isSelfClosing, this.attributes, children);
+    }
+
+    /**
+     * Get a copy of the current node with a new last child. The other children are shared.
+     * @param child The new child.
+     * @return The new node
+     */
+    public ImmutableNode withChildAppended(ImmutableNode child)
+    {
+        return this.withChildInserted(this.children.length, child);
+    }
+
+    /**
+     * Get a copy of the current node with a new child. The other children are shared.
+     * @param index The position of the new child.
+     * @param child The new child.
+     * @return The new node
+     */
+    public ImmutableNode withChildInserted(int index, ImmutableNode child)
+    {
+        if (index < 0 || index > this.children.length)
+        {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + this.children.length);
+        }
+
+        ImmutableNode[] children = new ImmutableNode[this.children.length + 1];
+        System.arraycopy(this.children, 0, children, 0, index);
+        children[index] = child;
+        System.arraycopy(this.children, index, children, index + 1, this.children.length - index);
+        return new ImmutableNode(this.tag, this.text, this.isSelfClosing, this.attributes, children);
+    }
+
+    /**
+     * Get a copy of the current node without a child. The other children are shared.
+     * @param index The position of the removed child.
+     * @return The new node
+     */
+    public ImmutableNode withoutChild(int index)
+    {
+        if (index < 0 || index >= this.children.length)
+        {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + this.children.length);
+        }
+
+        ImmutableNode[] children = this.children.length == 1 ? NO_CHILDREN : new ImmutableNode[this.children.length - 1];
+        System.arraycopy(this.children, 0, children, 0, index);
+        System.arraycopy(this.children, index + 1, children, index, children.length - index);
+        return new ImmutableNode(this.tag, this.text, this.isSelfClosing, this.attributes, children);
+    }
+
+    /**
+     * Get a copy of the current node without the children with a tag. The other children are shared.
+     * @param tag The tag of the removed children.
+     * @return The new node, or the current node if it has no such child
+     */
+    public ImmutableNode withoutChildrenByTag(String tag)
+    {
+        List<ImmutableNode> children = new ArrayList<>(this.children.length);
+        for (ImmutableNode child : this.children)
+        {
+            if (!child.tag.equals(tag))
+            {
+                children.add(child);
+            }
+        }
+
+        if (children.size() == this.children.length)
+        {
+            return this;
+        }
+
+        return new ImmutableNode(this.tag, this.text, this.isSelfClosing, this.attributes,
+                children.isEmpty() ? NO_CHILDREN : children.toArray(NO_CHILDREN));
+    }
+
+    /**
+     * Get a copy of the current node with a descendant changed by an edit.
+     * Only the nodes on the path of the descendant are copied, all the other nodes are shared.
+     * @param path The positions of the children on the path of the descendant, see getDescendant.
+     * @param edit The edit of the descendant, it returns the new descendant.
+     * @return The new node
+     */
+    public ImmutableNode withDescendant(int[] path, UnaryOperator<ImmutableNode> edit)
+    {
+        ImmutableNode[] nodes = new ImmutableNode[path.length + 1];
+        nodes[0] = this;
+        for (int i = 0; i < path.length; ++i)
+        {
+            nodes[i + 1] = nodes[i].children[path[i]];
+        }
+
+        // copy the path from the descendant up to the current node
+        ImmutableNode node = edit.apply(nodes[path.length]);
+        for (int i = path.length - 1; i >= 0; --i)
+        {
+            node = nodes[i].withChild(path[i], node);
+        }
+
+        return node;
+    }
+
+    @Override
+    public String toString()
+    {
+        return this.toXMLNode().toString();
+    }
+
+    private int findAttribute(String attributeName)
+    {
+        for (int i = 0; i < this.attributes.length; i += 2)
+        {
+            if (this.attributes[i].equals(attributeName))
+            {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+}
@@ -0,0 +1,188 @@
+package com.insa.xml;
+
+/**
+ * The source of the lazy nodes of a document.
+ * A lazy node only knows the position of its start tag: its tag and attributes,
+ * then its text and children, are read from the source the first time they are used.
+ * Reading the children of a node only skips through the content of the grandchildren.
+ * The top level nodes are linked as siblings, as in the tree of the parser: the next one
+ * is read after the content of the previous one is skipped.
+ * The reads share one tokenizer, a read started from a read gets its own.
+ * @author Dorian Terbah
+ */
+class LazyDocument
+{
+    private final String xml;
+    private final SymbolCache symbols;
+    
+    // the tokenizer of the reads, null while a read uses it
+    private XMLStringTokenizer tokenizer;
+    
+    private LazyDocument(String xml, SymbolCache symbols)
+    {
+        this.xml = xml;
+        this.symbols = symbols;
+        this.tokenizer = null;
+    }
+    
+    /**
+     * Create the lazy root of a document. Only the first start tag is looked for,
+     * the errors in the rest of the document are found when the nodes are used.
+     * @param xml The document
+     * @param symbols The cache of the names and the values, can be <code>null</code>
+     * @return The root of the document
+     */
+    static XMLNode parse(String xml, SymbolCache symbols)
+    {
+        LazyDocument document = new LazyDocument(xml, symbols);
+        XMLStringTokenizer tokenizer = document.acquire(0);
+        try
+        {
+            int token;
+            while ((token = tokenizer.next()) != XMLTokenizer.END_OF_INPUT)
+            {
+                if (token == XMLTokenizer.START_TAG)
+                {
+                    return document.createNode(tokenizer.mark, 0);
+                }
+            }
+        } finally
+        {
+            document.release(tokenizer);
+        }
+        
+        throw new XMLParsingException("The document has no root element");
+    }
+    
+    /**
+     * Read the tag, the attributes and the closing state of a node.
+     * @param node The node
+     * @param offset The position of the start tag of the node
+     */
+    void readHeader(XMLNode node, int offset)
+    {
+        XMLStringTokenizer tokenizer = this.acquire(offset);
+        try
+        {
+            tokenizer.next();
+            
+            node.setTag(tokenizer.getName());
+            node.setIsSelfClosing(tokenizer.isSelfClosing());
+            for (int i = 0; i < tokenizer.getAttributeCount(); ++i)
+            {
+                node.setAttribute(tokenizer.getAttributeName(i), tokenizer.getAttributeValue(i));
+            }
+        } finally
+        {
+            this.release(tokenizer);
+        }
+    }
+    
+    /**
+     * Read the text and the children of a node. The children are lazy nodes.
+     * @param node The node
+     * @param offset The position of the start tag of the node
+     */
+    void readContent(XMLNode node, int offset)
+    {
+        XMLStringTokenizer tokenizer = this.acquire(offset);
+        try
+        {
+            tokenizer.next();
+            if (tokenizer.isSelfClosing())
+            {
+                return;
+            }
+            
+            int token;
+            while ((token = tokenizer.next()) != XMLTokenizer.END_TAG)
+            {
+                switch (token)
+                {
+                    case XMLTokenizer.START_TAG:
+                        node.appendChild(this.createNode(tokenizer.mark, node.level + 1));
+                        tokenizer.skipElement();
+                        break;
+                    case XMLTokenizer.TEXT:
+                        if (node.getText().isEmpty())
+                        {
+                            node.setText(tokenizer.getText());
+                        }
+                        break;
+                    case XMLTokenizer.END_OF_INPUT:
+                        throw new XMLParsingException("Tag not closed");
+                    default:
+                        // for the momemt, don't take comments
+                        break;
+                }
+            }
+        } finally
+        {
+            this.release(tokenizer);
+        }
+    }
+    
+    /**
+     * Read the next top level node after a top level node, and link it as its next sibling.
+     * @param node The top level node
+     * @param offset The position of the start tag of the node
+     */
+    void readSibling(XMLNode node, int offset)
+    {
+        XMLStringTokenizer tokenizer = this.acquire(offset);
+        try
+        {
+            tokenizer.next();
+            tokenizer.skipElement();
+            
+            int token;
+            while ((token = tokenizer.next()) != XMLTokenizer.END_OF_INPUT)
+            {
+                if (token == XMLTokenizer.START_TAG)
+                {
+                    node.setNextSibling(this.createNode(tokenizer.mark, node.level));
+                    return;
+                }
+            }
+        } finally
+        {
+            this.release(tokenizer);
+        }
+    }
+    
+    private XMLNode createNode(int offset, int level)
+    {
+        XMLNode node = new XMLNode(false, level);
+        node.setSource(this, offset, level == 0);
+        return node;
+    }
+    
+    /**
+     * Take the tokenizer of the document for a read.
+     * @param offset The position of the first token of the read
+     * @return The tokenizer
+     */
+    private XMLStringTokenizer acquire(int offset)
+    {
+        XMLStringTokenizer tokenizer = this.tokenizer;
+        if (tokenizer == null)
+        {
+            // the first read, or a read started while the tokenizer is used
+            tokenizer = new XMLStringTokenizer();
+            tokenizer.setSymbols(this.symbols);
+        }
+        
+        this.tokenizer = null;
+        tokenizer.reset(this.xml, offset, this.xml.length());
+        return tokenizer;
+    }
+    
+    /**
+     * Give back the tokenizer at the end of a read.
+     * @param tokenizer The tokenizer
+     */
+    private void release(XMLStringTokenizer tokenizer)
+    {
+        this.tokenizer = tokenizer;
+    }
+}
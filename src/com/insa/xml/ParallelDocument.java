@@ -0,0 +1,201 @@
+package com.insa.xml;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Parse a big document on several threads.
+ * A fast scan skips through the children of the root, as the lazy nodes do, and cuts
+ * the content of the root into parts made of whole children. The texts of the root
+ * are read by the scan, the parts are parsed on a ForkJoinPool, then their nodes
+ * are appended to the root in their order.
+ * @author Dorian Terbah
+ */
+final class ParallelDocument
+{
+    // the smaller documents are parsed faster on one thread
+    static final int MIN_SIZE = 1 << 20;
+
+    // a part is big enough to be worth a task
+    private static final int MIN_PART_SIZE = 1 << 16;
+
+    private final XMLParser parser;
+    private final String xml;
+
+    // the start and the end of every part
+    private int[] parts;
+    private int count;
+
+    ParallelDocument(XMLParser parser, String xml)
+    {
+        this.parser = parser;
+        this.xml = xml;
+        this.parts = new int[64];
+        this.count = 0;
+    }
+
+    /**
+     * Parse the document.
+     * @param pool The pool of the threads.
+     * @return The root of the document, <code>null</code> if the document
+     * can't be cut into parts and must be parsed on one thread
+     */
+    XMLNode parse(ForkJoinPool pool)
+    {
+        TreeBuilder builder = this.parser.createRootBuilder();
+        try
+        {
+            if (!this.scan(builder, pool.getParallelism()))
+            {
+                return null;
+            }
+        } catch (XMLParsingException e)
+        {
+            // the errors are thrown by the parse on one thread, as for any document
+            return null;
+        }
+
+        XMLNode root = builder.getRoot();
+        XMLNode[] nodes = new XMLNode[this.count];
+        pool.invoke(new Part(nodes, 0, this.count));
+
+        for (XMLNode node : nodes)
+        {
+            while (node != null)
+            {
+                XMLNode next = node.next();
+                root.appendChild(node);
+                node = next;
+            }
+        }
+
+        return root;
+    }
+
+    /**
+     * Read the root and cut its content into parts.
+     * @return false if the document is not made of one root
+     */
+    private boolean scan(TreeBuilder builder, int parallelism)
+    {
+        XMLStringTokenizer tokenizer = this.parser.createTokenizer(this.xml);
+        int token;
+        do
+        {
+            token = tokenizer.next();
+            if (token == XMLTokenizer.END_OF_INPUT)
+            {
+                return false;
+            }
+        } while (token != XMLTokenizer.START_TAG);
+
+        String tag = tokenizer.getName();
+        if (tokenizer.isSelfClosing())
+        {
+            return false;
+        }
+
+        builder.startElement(tag, tokenizer.getAttributes(), false);
+        XMLNode root = builder.getRoot();
+
+        // a few parts per thread, so a slow part doesn't keep the other threads waiting
+        int size = Math.max(MIN_PART_SIZE, this.xml.length() / (4 * parallelism));
+        int start = -1;
+        while ((token = tokenizer.next()) != XMLTokenizer.END_TAG)
+        {
+            switch (token)
+            {
+                case XMLTokenizer.START_TAG:
+                    if (start < 0)
+                    {
+                        start = tokenizer.mark;
+                    }
+
+                    tokenizer.skipElement();
+                    if (tokenizer.cursor - start >= size)
+                    {
+                        this.add(start, tokenizer.cursor);
+                        start = -1;
+                    }
+                    break;
+                case XMLTokenizer.TEXT:
+                    // the scan reads every text between the children, even inside a part,
+                    // and the root keeps its first text as in a parse on one thread
+                    if (root.getText().isEmpty())
+                    {
+                        builder.text(tokenizer.getText());
+                    }
+                    break;
+                case XMLTokenizer.END_OF_INPUT:
+                    return false;
+                default:
+                    break;
+            }
+        }
+
+        if (start >= 0)
+        {
+            this.add(start, tokenizer.mark);
+        }
+
+        builder.endElement(tag);
+
+        // only comments and texts can follow the root
+        while ((token = tokenizer.next()) != XMLTokenizer.END_OF_INPUT)
+        {
+            if (token == XMLTokenizer.START_TAG)
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private void add(int start, int end)
+    {
+        if (2 * this.count == this.parts.length)
+        {
+            this.parts = Arrays.copyOf(this.parts, 2 * this.parts.length);
+        }
+
+        this.parts[2 * this.count] = start;
+        this.parts[2 * this.count + 1] = end;
+        ++this.count;
+    }
+
+    /**
+     * Parse the parts [from, to), splitted in halves until one part is left.
+     */
+    private final class Part extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final XMLNode[] nodes;
+        private final int from;
+        private final int to;
+
+        Part(XMLNode[] nodes, int from, int to)
+        {
+            this.nodes = nodes;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (this.to - this.from == 1)
+            {
+                int[] parts = ParallelDocument.this.parts;
+                this.nodes[this.from] = ParallelDocument.this.parser.parse(
+                        ParallelDocument.this.xml, parts[2 * this.from], parts[2 * this.from + 1], 1);
+            } else if (this.to > this.from)
+            {
+                int middle = (this.from + this.to) >>> 1;
+                invokeAll(new Part(this.nodes, this.from, middle), new Part(this.nodes, middle, this.to));
+            }
+        }
+    }
+}
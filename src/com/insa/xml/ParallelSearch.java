@@ -0,0 +1,127 @@
+package com.insa.xml;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Predicate;
+
+/**
+ * Search the nodes of a tree on several threads.
+ * A task searches a range of siblings: the range is splitted in halves, and a node
+ * with several children gives its children to a new task, as long as the threads
+ * are short of tasks. Below that, the task walks its nodes on its own thread.
+ * The results of the tasks are joined in their order, so the nodes are in document order.
+ * @author Dorian Terbah
+ */
+final class ParallelSearch extends RecursiveTask<List<XMLNode>>
+{
+    private static final long serialVersionUID = 1L;
+
+    // the number of waiting tasks above which a task doesn't split anymore
+    private static final int SURPLUS = 3;
+
+    // the nesting of the tasks, so a deep tree doesn't fill the call stack
+    private static final int MAX_DEPTH = 64;
+
+    private final List<XMLNode> nodes;
+    private final int from;
+    private final int to;
+    private final Predicate<XMLNode> filter;
+    private final int depth;
+
+    private ParallelSearch(List<XMLNode> nodes, int from, int to, Predicate<XMLNode> filter, int depth)
+    {
+        this.nodes = nodes;
+        this.from = from;
+        this.to = to;
+        this.filter = filter;
+        this.depth = depth;
+    }
+
+    /**
+     * Search a node, its next siblings and all of their descendants.
+     * The tree must not be changed, nor be a lazy tree being read, during the search.
+     * @param node The first node of the search.
+     * @param filter The condition of the returned nodes.
+     * @param pool The pool of the threads.
+     * @return The nodes which match the condition, in document order
+     */
+    static List<XMLNode> search(XMLNode node, Predicate<XMLNode> filter, ForkJoinPool pool)
+    {
+        List<XMLNode> siblings = new ArrayList<>();
+        for (XMLNode sibling = node; sibling != null; sibling = sibling.next())
+        {
+            siblings.add(sibling);
+        }
+
+        return pool.invoke(new ParallelSearch(siblings, 0, siblings.size(), filter, 0));
+    }
+
+    @Override
+    protected List<XMLNode> compute()
+    {
+        if (this.depth >= MAX_DEPTH || getSurplusQueuedTaskCount() > SURPLUS)
+        {
+            return this.walk();
+        }
+
+        if (this.to - this.from == 1)
+        {
+            XMLNode node = this.nodes.get(this.from);
+            List<XMLNode> children = node.getChildren();
+            if (children.size() < 2)
+            {
+                return this.walk();
+            }
+
+            List<XMLNode> result = new ArrayList<>();
+            if (this.filter.test(node))
+            {
+                result.add(node);
+            }
+
+            result.addAll(new ParallelSearch(children, 0, children.size(), this.filter, this.depth + 1).compute());
+            return result;
+        }
+
+        int middle = (this.from + this.to) >>> 1;
+        ParallelSearch left = new ParallelSearch(this.nodes, this.from, middle, this.filter, this.depth + 1);
+        ParallelSearch right = new ParallelSearch(this.nodes, middle, this.to, this.filter, this.depth + 1);
+        left.fork();
+        List<XMLNode> result = right.compute();
+        List<XMLNode> nodes = left.join();
+        nodes.addAll(result);
+        return nodes;
+    }
+
+    /**
+     * Search the nodes of the range and their descendants on the current thread.
+     */
+    private List<XMLNode> walk()
+    {
+        List<XMLNode> result = new ArrayList<>();
+        for (int i = this.from; i < this.to; ++i)
+        {
+            XMLNode node = this.nodes.get(i);
+            if (this.filter.test(node))
+            {
+                result.add(node);
+            }
+
+            List<XMLNode> children = node.getChildren();
+            if (!children.isEmpty())
+            {
+                // the first child and its next siblings are all the children
+                Iterator<XMLNode> descendants = new XMLNodeIterator(children.get(0), false, this.filter);
+                while (descendants.hasNext())
+                {
+                    result.add(descendants.next());
+                }
+            }
+        }
+
+        return result;
+    }
+}
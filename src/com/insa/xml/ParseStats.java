@@ -0,0 +1,229 @@
+package com.insa.xml;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * The measures of one parse: the size of the document, its content, and the time spent
+ * in every phase. The tokenize phase finds the tokens and the ranges of the names and of
+ * the attributes; the handler phase creates their Strings and builds the tree, or runs
+ * the handler given to the parse.
+ * <p>
+ * A lazy parse and a parse on a ForkJoinPool only measure the size and the total time:
+ * their tokens are not read one by one by the parse.
+ * @author Dorian Terbah
+ */
+public final class ParseStats
+{
+    private static final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+    private long bytes;
+    private long chars;
+    private int elements;
+    private int attributes;
+    private int texts;
+    private int comments;
+    private int maxDepth;
+    private long tokenizeNanos;
+    private long handlerNanos;
+    private long totalNanos;
+    private long allocatedBytes;
+
+    private ParseStats()
+    {
+        this.bytes = -1;
+        this.chars = -1;
+        this.allocatedBytes = -1;
+    }
+
+    /**
+     * Get the measures of a parse whose tokens are not measured.
+     * @param chars The number of chars of the document.
+     * @param start The System.nanoTime of the start of the parse.
+     * @return The measures
+     */
+    static ParseStats of(long chars, long start)
+    {
+        ParseStats stats = new ParseStats();
+        stats.chars = chars;
+        stats.totalNanos = System.nanoTime() - start;
+        return stats;
+    }
+
+    /**
+     * Send the tokens of a tokenizer to a handler, as XMLParser does, and measure them.
+     * The time is read twice per token, so the parse is slower than without measures.
+     * @param tokenizer The tokenizer of the document.
+     * @param handler The handler of the events.
+     * @return The measures
+     */
+    static ParseStats collect(XMLTokenizer tokenizer, XMLHandler handler)
+    {
+        ParseStats stats = new ParseStats();
+        EventDispatcher dispatcher = new EventDispatcher();
+        long allocated = allocatedBytes();
+        long start = System.nanoTime();
+        long time = start;
+        int token, depth = 0;
+        while (true)
+        {
+            token = tokenizer.next();
+            long tokenized = System.nanoTime();
+            stats.tokenizeNanos += tokenized - time;
+            if (token == XMLTokenizer.END_OF_INPUT)
+            {
+                break;
+            }
+
+            switch (token)
+            {
+                case XMLTokenizer.START_TAG:
+                    ++stats.elements;
+                    stats.attributes += tokenizer.getAttributeCount();
+                    stats.maxDepth = Math.max(stats.maxDepth, ++depth);
+                    break;
+                case XMLTokenizer.END_TAG:
+                    --depth;
+                    break;
+                case XMLTokenizer.TEXT:
+                    ++stats.texts;
+                    break;
+                default:
+                    ++stats.comments;
+                    break;
+            }
+
+            dispatcher.dispatch(tokenizer, token, handler);
+            time = System.nanoTime();
+            stats.handlerNanos += time - tokenized;
+        }
+
+        stats.totalNanos = System.nanoTime() - start;
+        if (allocated >= 0)
+        {
+            stats.allocatedBytes = allocatedBytes() - allocated;
+        }
+
+        if (tokenizer.hasByteUnits())
+        {
+            stats.bytes = tokenizer.getOffset();
+        } else
+        {
+            stats.chars = tokenizer.getOffset();
+        }
+
+        return stats;
+    }
+
+    /**
+     * @return The number of bytes of the document, -1 if the document was not read as bytes
+     */
+    public long getBytes()
+    {
+        return this.bytes;
+    }
+
+    /**
+     * @return The number of chars of the document, -1 if the document was read as bytes
+     */
+    public long getChars()
+    {
+        return this.chars;
+    }
+
+    /**
+     * @return The number of elements of the document
+     */
+    public int getElements()
+    {
+        return this.elements;
+    }
+
+    /**
+     * @return The number of attributes of the document
+     */
+    public int getAttributes()
+    {
+        return this.attributes;
+    }
+
+    /**
+     * @return The number of texts of the document, CDATA sections included
+     */
+    public int getTexts()
+    {
+        return this.texts;
+    }
+
+    /**
+     * @return The number of comments of the document
+     */
+    public int getComments()
+    {
+        return this.comments;
+    }
+
+    /**
+     * @return The depth of the deepest element, the root is at depth 1
+     */
+    public int getMaxDepth()
+    {
+        return this.maxDepth;
+    }
+
+    /**
+     * @return The time spent to find the tokens, in nanoseconds
+     */
+    public long getTokenizeNanos()
+    {
+        return this.tokenizeNanos;
+    }
+
+    /**
+     * @return The time spent to build the tree or in the handler, in nanoseconds
+     */
+    public long getHandlerNanos()
+    {
+        return this.handlerNanos;
+    }
+
+    /**
+     * @return The time of the whole parse, in nanoseconds
+     */
+    public long getTotalNanos()
+    {
+        return this.totalNanos;
+    }
+
+    /**
+     * @return The number of bytes allocated by the parse, -1 if the JVM doesn't measure them
+     */
+    public long getAllocatedBytes()
+    {
+        return this.allocatedBytes;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "ParseStats[bytes=" + this.bytes + ", chars=" + this.chars
+                + ", elements=" + this.elements + ", attributes=" + this.attributes
+                + ", texts=" + this.texts + ", comments=" + this.comments + ", maxDepth=" + this.maxDepth
+                + ", tokenizeNanos=" + this.tokenizeNanos + ", handlerNanos=" + this.handlerNanos
+                + ", totalNanos=" + this.totalNanos + ", allocatedBytes=" + this.allocatedBytes + "]";
+    }
+
+    private static long allocatedBytes()
+    {
+        if (threads instanceof com.sun.management.ThreadMXBean)
+        {
+            com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) threads;
+            if (bean.isThreadAllocatedMemorySupported() && bean.isThreadAllocatedMemoryEnabled())
+            {
+                return bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+
+        return -1;
+    }
+}
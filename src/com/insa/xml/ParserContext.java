@@ -0,0 +1,139 @@
+package com.insa.xml;
+
+/**
+ * The state of one parse: the tokenizers and the builder of the tree.
+ * A context is never shared between two running parses, but it can be kept
+ * by a thread to avoid allocating its buffers again on every call.
+ * The tokenizers are only created when a source of their kind is parsed.
+ * @author Dorian Terbah
+ */
+class ParserContext
+{
+    final TreeBuilder builder;
+    
+    private XMLStringTokenizer stringTokenizer;
+    private XMLReaderTokenizer readerTokenizer;
+    private XMLByteTokenizer byteTokenizer;
+    private XMLMappedTokenizer mappedTokenizer;
+    private SymbolCache symbols;
+    private boolean inUse;
+    
+    ParserContext()
+    {
+        this.builder = new TreeBuilder();
+        this.stringTokenizer = null;
+        this.readerTokenizer = null;
+        this.byteTokenizer = null;
+        this.mappedTokenizer = null;
+        this.symbols = null;
+        this.inUse = false;
+    }
+    
+    XMLStringTokenizer stringTokenizer()
+    {
+        if (this.stringTokenizer == null)
+        {
+            this.stringTokenizer = new XMLStringTokenizer();
+        }
+        
+        return this.stringTokenizer;
+    }
+    
+    XMLReaderTokenizer readerTokenizer()
+    {
+        if (this.readerTokenizer == null)
+        {
+            this.readerTokenizer = new XMLReaderTokenizer();
+        }
+        
+        return this.readerTokenizer;
+    }
+    
+    XMLByteTokenizer byteTokenizer()
+    {
+        if (this.byteTokenizer == null)
+        {
+            this.byteTokenizer = new XMLByteTokenizer();
+        }
+        
+        return this.byteTokenizer;
+    }
+    
+    XMLMappedTokenizer mappedTokenizer()
+    {
+        if (this.mappedTokenizer == null)
+        {
+            this.mappedTokenizer = new XMLMappedTokenizer();
+        }
+        
+        return this.mappedTokenizer;
+    }
+    
+    /**
+     * Get the cache of the Strings for a configuration. The cache is kept
+     * between the parses as long as the configuration doesn't change.
+     * @param table The table of the names, <code>null</code> to not intern them
+     * @param cacheValues true to cache the short values
+     * @return The cache, or <code>null</code> if nothing is cached
+     */
+    SymbolCache symbols(SymbolTable table, boolean cacheValues)
+    {
+        if (table == null && !cacheValues)
+        {
+            return null;
+        }
+        
+        if (this.symbols == null || !this.symbols.accepts(table, cacheValues))
+        {
+            this.symbols = new SymbolCache(table, cacheValues);
+        }
+        
+        return this.symbols;
+    }
+    
+    /**
+     * Take the context for a parse.
+     * @return false if the context is already used by a running parse
+     */
+    boolean acquire()
+    {
+        if (this.inUse)
+        {
+            return false;
+        }
+        
+        this.inUse = true;
+        return true;
+    }
+    
+    /**
+     * Give back the context at the end of a parse.
+     * The document and the nodes are not retained by the context.
+     */
+    void release()
+    {
+        if (this.stringTokenizer != null)
+        {
+            this.stringTokenizer.reset("");
+        }
+        
+        if (this.readerTokenizer != null)
+        {
+            this.readerTokenizer.reset(null);
+        }
+        
+        if (this.byteTokenizer != null)
+        {
+            this.byteTokenizer.reset(null);
+        }
+        
+        if (this.mappedTokenizer != null)
+        {
+            // the segment is unmapped once it is not referenced anymore
+            this.mappedTokenizer.reset(null);
+        }
+        
+        this.builder.reset();
+        this.inUse = false;
+    }
+}
@@ -0,0 +1,146 @@
+package com.insa.xml;
+
+/**
+ * The cache of the Strings of one parse context.
+ * The names are looked up straight from the range of the source, without
+ * creating a temporary String, and are interned in the shared SymbolTable.
+ * The short values are kept in a bounded cache, the last value of a slot wins.
+ * @author Dorian Terbah
+ */
+final class SymbolCache
+{
+    private static final int MAX_SYMBOLS = 4096;
+    private static final int VALUE_SLOTS = 1024;
+    private static final int MAX_VALUE_LENGTH = 32;
+    
+    private final SymbolTable table;
+    
+    // open addressing table of the names
+    private String[] symbols;
+    private int[] hashes;
+    private int count;
+    
+    // direct mapped cache of the short values
+    private final String[] values;
+    
+    SymbolCache(SymbolTable table, boolean cacheValues)
+    {
+        this.table = table;
+        this.symbols = new String[64];
+        this.hashes = new int[64];
+        this.count = 0;
+        this.values = cacheValues ? new String[VALUE_SLOTS] : null;
+    }
+    
+    /**
+     * @param table The table of the names
+     * @param cacheValues true if the values are cached
+     * @return true if the cache has the given configuration
+     */
+    boolean accepts(SymbolTable table, boolean cacheValues)
+    {
+        return this.table == table && (this.values != null) == cacheValues;
+    }
+    
+    /**
+     * Get the String of a name.
+     * @param tokenizer The tokenizer holding the name
+     * @param start The first index of the name
+     * @param end The end of the name
+     * @return The canonical String of the name
+     */
+    String symbol(XMLTokenizer tokenizer, int start, int end)
+    {
+        if (this.table == null)
+        {
+            return tokenizer.decode(start, end);
+        }
+        
+        int hash = hash(tokenizer, start, end);
+        int mask = this.symbols.length - 1;
+        int index = hash & mask;
+        String symbol;
+        while ((symbol = this.symbols[index]) != null)
+        {
+            if (this.hashes[index] == hash && tokenizer.matches(start, end, symbol))
+            {
+                return symbol;
+            }
+            
+            index = (index + 1) & mask;
+        }
+        
+        symbol = this.table.intern(tokenizer.decode(start, end));
+        if (this.count < MAX_SYMBOLS)
+        {
+            this.symbols[index] = symbol;
+            this.hashes[index] = hash;
+            if (++this.count > this.symbols.length / 2)
+            {
+                this.grow();
+            }
+        }
+        
+        return symbol;
+    }
+    
+    /**
+     * Get the String of a value. A short value is taken from the cache when it is there.
+     * @param tokenizer The tokenizer holding the value
+     * @param start The first index of the value
+     * @param end The end of the value
+     * @return The String of the value
+     */
+    String value(XMLTokenizer tokenizer, int start, int end)
+    {
+        if (this.values == null || end - start > MAX_VALUE_LENGTH)
+        {
+            return tokenizer.decode(start, end);
+        }
+        
+        int index = hash(tokenizer, start, end) & (VALUE_SLOTS - 1);
+        String value = this.values[index];
+        if (value == null || !tokenizer.matches(start, end, value))
+        {
+            value = tokenizer.decode(start, end);
+            this.values[index] = value;
+        }
+        
+        return value;
+    }
+    
+    private static int hash(XMLTokenizer tokenizer, int start, int end)
+    {
+        int hash = 0;
+        for (int i = start; i < end; ++i)
+        {
+            hash = 31 * hash + tokenizer.charAt(i);
+        }
+        
+        return hash ^ (hash >>> 16);
+    }
+    
+    private void grow()
+    {
+        String[] symbols = new String[2 * this.symbols.length];
+        int[] hashes = new int[symbols.length];
+        int mask = symbols.length - 1;
+        for (int i = 0; i < this.symbols.length; ++i)
+        {
+            if (this.symbols[i] != null)
+            {
+                int index = this.hashes[i] & mask;
+                while (symbols[index] != null)
+                {
+                    index = (index + 1) & mask;
+                }
+                
+                symbols[index] = this.symbols[i];
+                hashes[index] = this.hashes[i];
+            }
+        }
+        
+        this.symbols = symbols;
+        this.hashes = hashes;
+    }
+}
@@ -0,0 +1,41 @@
+package com.insa.xml;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A pool of canonical Strings for the tag names and the attribute names.
+ * A table can be shared by several parsers and threads: each parse looks the
+ * names up in its own cache first, straight from the source, and only asks
+ * the table for the names it has not seen yet.
+ * The table is never emptied, it must only hold names, not values.
+ * @author Dorian Terbah
+ */
+public class SymbolTable
+{
+    private final ConcurrentMap<String, String> symbols;
+    
+    public SymbolTable()
+    {
+        this.symbols = new ConcurrentHashMap<>();
+    }
+    
+    /**
+     * Get the canonical instance of a name.
+     * @param symbol The name
+     * @return The instance of the name held by the table
+     */
+    public String intern(String symbol)
+    {
+        String canonical = this.symbols.putIfAbsent(symbol, symbol);
+        return canonical != null ? canonical : symbol;
+    }
+    
+    /**
+     * @return The number of names in the table
+     */
+    public int size()
+    {
+        return this.symbols.size();
+    }
+}
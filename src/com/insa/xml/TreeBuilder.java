@@ -0,0 +1,138 @@
+package com.insa.xml;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Build a tree of XMLNode from the events of the parser.
+ * The nodes are linked to their parent and to their siblings as soon as they are opened.
+ * @author Dorian Terbah
+ */
+class TreeBuilder implements XMLHandler
+{
+    // the open elements
+    private final Deque<XMLNode> stack;
+    private XMLNode root;
+    private XMLNode last;
+    private boolean indexTags;
+    private String[] indexedAttributes;
+    
+    // the level of the top level nodes
+    private int level;
+    
+    TreeBuilder()
+    {
+        this.stack = new ArrayDeque<>();
+        this.reset();
+    }
+    
+    /**
+     * Forget the previous tree.
+     * @return The current builder
+     */
+    TreeBuilder reset()
+    {
+        return this.reset(false, null);
+    }
+    
+    /**
+     * Forget the previous tree.
+     * @param indexTags true to index the tags of the next tree while it is built
+     * @param indexedAttributes The attributes whose values are indexed while the tree is built, can be <code>null</code>
+     * @return The current builder
+     */
+    TreeBuilder reset(boolean indexTags, String[] indexedAttributes)
+    {
+        this.stack.clear();
+        this.root = null;
+        this.last = null;
+        this.indexTags = indexTags;
+        this.indexedAttributes = indexedAttributes;
+        this.level = 0;
+        return this;
+    }
+    
+    /**
+     * Set the level of the top level nodes of the next tree, when it is a part of a bigger tree.
+     * @param level The level of the top level nodes
+     * @return The current builder
+     */
+    TreeBuilder setLevel(int level)
+    {
+        this.level = level;
+        return this;
+    }
+    
+    /**
+     * Get the root of the built tree.
+     * @return The first top level node
+     */
+    XMLNode getRoot()
+    {
+        if (this.root == null)
+        {
+            throw new XMLParsingException("The document has no root element");
+        }
+        
+        return this.root;
+    }
+    
+    @Override
+    public void startElement(String tag, XMLAttributes attributes, boolean isSelfClosing)
+    {
+        XMLNode node = new XMLNode(isSelfClosing, this.level + this.stack.size());
+        node.setTag(tag);
+        for (int i = 0; i < attributes.getLength(); ++i)
+        {
+            node.setAttribute(attributes.getName(i), attributes.getValue(i));
+        }
+        
+        if (!this.stack.isEmpty())
+        {
+            this.stack.peek().appendChild(node);
+        } else
+        {
+            // top level nodes are siblings of the root
+            if (this.root == null)
+            {
+                this.root = node;
+                // the next nodes are indexed as they are appended
+                if (this.indexTags)
+                {
+                    node.buildTagIndex();
+                }
+                
+                for (int i = 0; this.indexedAttributes != null && i < this.indexedAttributes.length; ++i)
+                {
+                    node.buildAttributeIndex(this.indexedAttributes[i]);
+                }
+            } else
+            {
+                this.last.setNextSibling(node);
+            }
+            
+            this.last = node;
+        }
+        
+        this.stack.push(node);
+    }
+    
+    @Override
+    public void text(String text)
+    {
+        XMLNode node = this.stack.peek();
+        if (node != null && node.getText().isEmpty())
+        {
+            node.setText(text);
+        }
+    }
+    
+    @Override
+    public void endElement(String tag)
+    {
+        if (!this.stack.isEmpty())
+        {
+            this.stack.pop();
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.insa.xml;
+
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
+
+/**
+ * A document made of ImmutableNode, changed by publishing new versions of its root.
+ * A snapshot is the root of the current version: it is taken in constant time, and
+ * it stays consistent whatever the later edits, so the readers need no lock.
+ * An edit builds the new version from the current one, sharing all the unchanged
+ * subtrees, then publishes it atomically; when two writers edit at once, the edit
+ * of the slower one is applied again on the version of the faster one.
+ * @author Dorian Terbah
+ */
+public class VersionedDocument
+{
+    private final AtomicReference<ImmutableNode> root;
+
+    /**
+     * @param root The root of the first version.
+     */
+    public VersionedDocument(ImmutableNode root)
+    {
+        this.root = new AtomicReference<>(root);
+    }
+
+    /**
+     * @param root The root of the first version, copied once.
+     */
+    public VersionedDocument(XMLNode root)
+    {
+        this(ImmutableNode.of(root));
+    }
+
+    /**
+     * Get the current version of the document.
+     * @return The root of the current version
+     */
+    public ImmutableNode snapshot()
+    {
+        return this.root.get();
+    }
+
+    /**
+     * Publish a new version of the document built from the current one.
+     * The edit can be run several times when other edits are published at the same time,
+     * it must have no side effect.
+     * @param edit The edit of the root, it returns the new root.
+     * @return The root of the published version
+     */
+    public ImmutableNode update(UnaryOperator<ImmutableNode> edit)
+    {
+        while (true)
+        {
+            ImmutableNode current = this.root.get();
+            ImmutableNode next = edit.apply(current);
+            if (next == current || this.root.compareAndSet(current, next))
+            {
+                return next;
+            }
+        }
+    }
+
+    /**
+     * Publish a new version of the document with a descendant of the root changed.
+     * Only the nodes on the path of the descendant are copied.
+     * @param path The positions of the children on the path of the descendant, see ImmutableNode.getDescendant.
+     * @param edit The edit of the descendant, it returns the new descendant. It must have no side effect.
+     * @return The root of the published version
+     */
+    public ImmutableNode update(int[] path, UnaryOperator<ImmutableNode> edit)
+    {
+        int[] copy = path.clone();
+        return this.update(root -> root.withDescendant(copy, edit));
+    }
+
+    /**
+     * Publish a new version of the document if the current version is still an expected one.
+     * @param expected The expected root of the current version.
+     * @param root The root of the new version.
+     * @return false if another version has been published since the expected one
+     */
+    public boolean compareAndSet(ImmutableNode expected, ImmutableNode root)
+    {
+        return this.root.compareAndSet(expected, root);
+    }
+}
@@ -0,0 +1,36 @@
+package com.insa.xml;
+
+/**
+ * The attributes of the element being parsed.
+ * They are read from the source when they are asked, so a handler which doesn't
+ * look at them doesn't pay for them.
+ * @author Dorian Terbah
+ */
+public interface XMLAttributes
+{
+    /**
+     * @return The number of attributes.
+     */
+    int getLength();
+    
+    /**
+     * Get the name of an attribute.
+     * @param index The index of the attribute.
+     * @return The name of the attribute.
+     */
+    String getName(int index);
+    
+    /**
+     * Get the value of an attribute.
+     * @param index The index of the attribute.
+     * @return The value of the attribute.
+     */
+    String getValue(int index);
+    
+    /**
+     * Get the value of an attribute by its name.
+     * @param name The name of the attribute.
+     * @return The value of the attribute if exists, else <code>null</code>
+     */
+    String getValue(String name);
+}
@@ -0,0 +1,112 @@
+package com.insa.xml;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Tokenizer over a UTF-8 source, scanned byte by byte.
+ * The markup chars are all ASCII and the bytes of a multi-byte UTF-8 sequence
+ * are never ASCII, so the names and the values are only decoded when they are asked.
+ * The stream is read through a window which only holds the current token,
+ * so a document bigger than the heap is never held as a whole.
+ * The mapped files are scanned by XMLMappedTokenizer.
+ * @author Dorian Terbah
+ */
+final class XMLByteTokenizer extends XMLTokenizer
+{
+    static final int BUFFER_SIZE = 65536;
+
+    private byte[] buffer;
+    private InputStream input;
+
+    XMLByteTokenizer()
+    {
+        this.buffer = new byte[BUFFER_SIZE];
+        this.input = null;
+    }
+
+    /**
+     * Put the cursor at the beginning of a new document.
+     * @param input The stream of the new document, <code>null</code> to release the previous one
+     */
+    void reset(InputStream input)
+    {
+        this.input = input;
+        if (this.buffer.length > 4 * BUFFER_SIZE)
+        {
+            // don't keep the buffer grown by a big token of the previous document
+            this.buffer = new byte[BUFFER_SIZE];
+        }
+
+        this.reset(0, 0);
+    }
+
+    @Override
+    int charAt(int index)
+    {
+        return this.buffer[index] & 0xFF;
+    }
+
+    @Override
+    int indexOf(char c)
+    {
+        byte b = (byte) c;
+        for (int i = this.cursor; i < this.limit; ++i)
+        {
+            if (this.buffer[i] == b)
+            {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    @Override
+    int read()
+    {
+        if (this.limit == this.buffer.length)
+        {
+            if (this.mark > 0)
+            {
+                // the data before the current token is not needed anymore
+                int count = this.mark;
+                System.arraycopy(this.buffer, count, this.buffer, 0, this.limit - count);
+                this.discard(count);
+            } else
+            {
+                byte[] buffer = new byte[2 * this.buffer.length];
+                System.arraycopy(this.buffer, 0, buffer, 0, this.limit);
+                this.buffer = buffer;
+            }
+        }
+
+        try
+        {
+            int count = this.input.read(this.buffer, this.limit, this.buffer.length - this.limit);
+            if (count > 0)
+            {
+                this.limit += count;
+            }
+
+            return count;
+        } catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    boolean hasByteUnits()
+    {
+        return true;
+    }
+
+    @Override
+    String decode(int start, int end)
+    {
+        return new String(this.buffer, start, end - start, StandardCharsets.UTF_8);
+    }
+}
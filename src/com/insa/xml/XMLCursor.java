@@ -0,0 +1,223 @@
+package com.insa.xml;
+
+/**
+ * A movable view on the nodes of a CompactDocument: one cursor reads every node
+ * of the document, without creating any object for the nodes it passes.
+ * The Strings of the tags are shared, the texts and the values are created when they are asked.
+ * A cursor must not be used by several threads at once, but a document can have many cursors.
+ * @author Dorian Terbah
+ */
+public class XMLCursor
+{
+    private final CompactDocument document;
+    private int node;
+    private int depth;
+
+    XMLCursor(CompactDocument document)
+    {
+        this.document = document;
+        this.node = document.getRoot();
+        this.depth = 0;
+    }
+
+    /**
+     * Get the document of the cursor.
+     * @return The document
+     */
+    public CompactDocument getDocument()
+    {
+        return this.document;
+    }
+
+    /**
+     * Get the node under the cursor.
+     * @return The node
+     */
+    public int getNode()
+    {
+        return this.node;
+    }
+
+    /**
+     * Get the depth of the node under the cursor, the top level nodes are at depth 0.
+     * @return The number of ancestors of the node
+     */
+    public int getDepth()
+    {
+        return this.depth;
+    }
+
+    /**
+     * Move the cursor to any node of the document.
+     * @param node The node.
+     * @return The current cursor
+     */
+    public XMLCursor moveTo(int node)
+    {
+        if (node < 0 || node >= this.document.size())
+        {
+            throw new IndexOutOfBoundsException("No node " + node);
+        }
+
+        this.node = node;
+        this.depth = 0;
+        for (int parent = this.document.getParent(node); parent != CompactDocument.NONE; parent = this.document.getParent(parent))
+        {
+            ++this.depth;
+        }
+
+        return this;
+    }
+
+    /**
+     * Move the cursor to the parent of the node.
+     * @return false if the node has no parent, the cursor doesn't move
+     */
+    public boolean toParent()
+    {
+        int parent = this.document.getParent(this.node);
+        if (parent == CompactDocument.NONE)
+        {
+            return false;
+        }
+
+        this.node = parent;
+        --this.depth;
+        return true;
+    }
+
+    /**
+     * Move the cursor to the first child of the node.
+     * @return false if the node has no child, the cursor doesn't move
+     */
+    public boolean toFirstChild()
+    {
+        int child = this.document.getFirstChild(this.node);
+        if (child == CompactDocument.NONE)
+        {
+            return false;
+        }
+
+        this.node = child;
+        ++this.depth;
+        return true;
+    }
+
+    /**
+     * Move the cursor to the next sibling of the node.
+     * @return false if the node has no next sibling, the cursor doesn't move
+     */
+    public boolean toNextSibling()
+    {
+        int sibling = this.document.getNextSibling(this.node);
+        if (sibling == CompactDocument.NONE)
+        {
+            return false;
+        }
+
+        this.node = sibling;
+        return true;
+    }
+
+    /**
+     * Move the cursor to the next node in document order.
+     * @return false if the node is the last of the document, the cursor doesn't move
+     */
+    public boolean toNext()
+    {
+        if (this.node + 1 >= this.document.size())
+        {
+            return false;
+        }
+
+        // the nodes are numbered in document order, the next one is a child or a sibling of an ancestor
+        int next = this.node + 1;
+        int parent = this.document.getParent(next);
+        if (parent == this.node)
+        {
+            ++this.depth;
+        } else
+        {
+            for (int ancestor = this.document.getParent(this.node); ancestor != parent; ancestor = this.document.getParent(ancestor))
+            {
+                --this.depth;
+            }
+        }
+
+        this.node = next;
+        return true;
+    }
+
+    /**
+     * Get the tag of the node.
+     * @return The tag
+     */
+    public String getTag()
+    {
+        return this.document.getTag(this.node);
+    }
+
+    /**
+     * Get the text of the node.
+     * @return The text, empty if the node has none
+     */
+    public String getText()
+    {
+        return this.document.getText(this.node);
+    }
+
+    /**
+     * @return true if the node is self closing, else false
+     */
+    public boolean isSelfClosing()
+    {
+        return this.document.isSelfClosing(this.node);
+    }
+
+    /**
+     * @return The number of attributes of the node
+     */
+    public int getAttributeCount()
+    {
+        return this.document.getAttributeCount(this.node);
+    }
+
+    /**
+     * Get the name of an attribute of the node.
+     * @param index The index of the attribute.
+     * @return The name of the attribute
+     */
+    public String getAttributeName(int index)
+    {
+        return this.document.getAttributeName(this.node, index);
+    }
+
+    /**
+     * Get the value of an attribute of the node.
+     * @param index The index of the attribute.
+     * @return The value of the attribute
+     */
+    public String getAttributeValue(int index)
+    {
+        return this.document.getAttributeValue(this.node, index);
+    }
+
+    /**
+     * Get the value of an attribute of the node.
+     * @param attributeName The name of the attribute.
+     * @return The value of the attribute, <code>null</code> if the node has no such attribute
+     */
+    public String getAttribute(String attributeName)
+    {
+        return this.document.getAttribute(this.node, attributeName);
+    }
+
+    /**
+     * Copy the node and its descendants into a tree of XMLNode.
+     * @return The copy of the node
+     */
+    public XMLNode toXMLNode()
+    {
+        return this.document.toXMLNode(this.node);
+    }
+}
@@ -0,0 +1,163 @@
+package com.insa.xml;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * Parse a document given piece by piece, as it arrives from a socket or a channel,
+ * without ever blocking the caller: every call of feed reads the complete tokens of the
+ * data received so far and returns. A token cut by the end of the data is read again,
+ * from its start, when the rest of it is fed.
+ * <p>
+ * The parser either builds a tree, returned by getRoot after end, or sends the events to
+ * a handler while the data is fed. It is created by XMLParser.createFeedParser, and it parses
+ * one document only. It must not be used by several threads at once.
+ * @author Dorian Terbah
+ */
+public class XMLFeedParser
+{
+    private final XMLFeedTokenizer tokenizer;
+    private final XMLHandler handler;
+    private final TreeBuilder builder;
+    private final EventDispatcher dispatcher;
+
+    // the bytes of a char cut by the end of a fed buffer
+    private final CharsetDecoder decoder;
+    private final ByteBuffer pending;
+
+    // a token is cut by the end of the data
+    private boolean isWaiting;
+    private boolean isEnded;
+
+    XMLFeedParser(Charset charset, XMLHandler handler, TreeBuilder builder, SymbolCache symbols)
+    {
+        this.tokenizer = new XMLFeedTokenizer();
+        this.tokenizer.setSymbols(symbols);
+        this.builder = builder;
+        this.handler = builder != null ? builder : handler;
+        this.dispatcher = new EventDispatcher();
+        this.decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.pending = ByteBuffer.allocate(16);
+        this.isWaiting = false;
+        this.isEnded = false;
+    }
+
+    /**
+     * Give the next chars of the document, and read the tokens they complete.
+     * @param chars The chars
+     * @param offset The index of the first char
+     * @param length The number of chars
+     * @throws XMLParsingException If the document is malformed
+     */
+    public void feed(char[] chars, int offset, int length)
+    {
+        this.checkNotEnded();
+        int size = this.tokenizer.limit - this.tokenizer.mark;
+        this.tokenizer.append(chars, offset, length);
+        this.parse(this.tokenizer.mark + size);
+    }
+
+    /**
+     * Give the next bytes of the document, and read the tokens they complete.
+     * All the bytes are consumed: the bytes of a char cut by the end of the buffer
+     * are kept until the next call.
+     * @param bytes The bytes, in the charset of the parser
+     * @throws XMLParsingException If the document is malformed
+     */
+    public void feed(ByteBuffer bytes)
+    {
+        this.checkNotEnded();
+        int size = this.tokenizer.limit - this.tokenizer.mark;
+
+        // complete the cut char, one byte at a time
+        while (this.pending.position() > 0 && bytes.hasRemaining())
+        {
+            this.pending.put(bytes.get());
+            this.pending.flip();
+            this.tokenizer.append(this.pending, this.decoder, false);
+            this.pending.compact();
+        }
+
+        this.tokenizer.append(bytes, this.decoder, false);
+        this.pending.put(bytes);
+        this.parse(this.tokenizer.mark + size);
+    }
+
+    /**
+     * Tell the parser that the document is complete, and read its last tokens.
+     * @throws XMLParsingException If the document is malformed or incomplete
+     */
+    public void end()
+    {
+        this.checkNotEnded();
+        this.pending.flip();
+        this.tokenizer.append(this.pending, this.decoder, true);
+        this.pending.clear();
+        this.tokenizer.end();
+        this.isEnded = true;
+        this.isWaiting = false;
+        this.parse(this.tokenizer.limit);
+    }
+
+    /**
+     * Get the root of the document, when the parser builds a tree.
+     * @return The first top level node
+     * @throws IllegalStateException If the parser sends its events to a handler, or end was not called
+     */
+    public XMLNode getRoot()
+    {
+        if (this.builder == null || !this.isEnded)
+        {
+            throw new IllegalStateException("The tree is only available after end, from a parser without handler");
+        }
+
+        return this.builder.getRoot();
+    }
+
+    /**
+     * @return true once end has been called
+     */
+    public boolean isEnded()
+    {
+        return this.isEnded;
+    }
+
+    /**
+     * Read the complete tokens of the data.
+     * @param from The start of the new data
+     */
+    private void parse(int from)
+    {
+        // the cut token can't be complete without a chevron, so it is not read again for nothing
+        if (this.isWaiting && !this.tokenizer.hasDelimiter(from))
+        {
+            return;
+        }
+
+        this.isWaiting = false;
+        try
+        {
+            int token;
+            while ((token = this.tokenizer.next()) != XMLTokenizer.END_OF_INPUT)
+            {
+                this.dispatcher.dispatch(this.tokenizer, token, this.handler);
+            }
+        } catch (XMLFeedTokenizer.NeedInput e)
+        {
+            this.tokenizer.rewind();
+            this.isWaiting = true;
+        }
+    }
+
+    private void checkNotEnded()
+    {
+        if (this.isEnded)
+        {
+            throw new IllegalStateException("The document has been ended");
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.insa.xml;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+
+/**
+ * Tokenizer over the data given by the caller, as it arrives.
+ * When a token is cut by the end of the data, the tokenizer stops with a NeedInput:
+ * the cursor goes back to the start of the token, and the token is read again
+ * once more data has been appended.
+ * @author Dorian Terbah
+ */
+final class XMLFeedTokenizer extends XMLTokenizer
+{
+    static final int BUFFER_SIZE = 8192;
+
+    // thrown for every cut token, so it has no stack trace
+    static final NeedInput NEED_INPUT = new NeedInput();
+
+    private char[] buffer;
+    private boolean isEnded;
+
+    XMLFeedTokenizer()
+    {
+        this.buffer = new char[BUFFER_SIZE];
+        this.isEnded = false;
+    }
+
+    /**
+     * Append chars at the end of the data.
+     * @param chars The chars
+     * @param offset The index of the first char
+     * @param length The number of chars
+     */
+    void append(char[] chars, int offset, int length)
+    {
+        this.ensureCapacity(length);
+        System.arraycopy(chars, offset, this.buffer, this.limit, length);
+        this.limit += length;
+    }
+
+    /**
+     * Decode bytes at the end of the data. The bytes of an incomplete char are left in the input.
+     * @param input The bytes
+     * @param decoder The decoder of the bytes
+     * @param endOfInput true if no bytes follow the input
+     */
+    void append(ByteBuffer input, CharsetDecoder decoder, boolean endOfInput)
+    {
+        this.ensureCapacity((int) Math.ceil(input.remaining() * (double) decoder.maxCharsPerByte()) + 1);
+        CharBuffer output = CharBuffer.wrap(this.buffer, this.limit, this.buffer.length - this.limit);
+        decoder.decode(input, output, endOfInput);
+        if (endOfInput)
+        {
+            decoder.flush(output);
+        }
+
+        this.limit = output.position();
+    }
+
+    /**
+     * Find a token delimiter in the data from a position: a cut token can't end without one.
+     * @param start The position
+     * @return true if a '&lt;' or a '&gt;' follows the position
+     */
+    boolean hasDelimiter(int start)
+    {
+        for (int i = start; i < this.limit; ++i)
+        {
+            char c = this.buffer[i];
+            if (c == '<' || c == '>')
+            {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Tell the tokenizer that no data follows: the last token ends with the data.
+     */
+    void end()
+    {
+        this.isEnded = true;
+    }
+
+    /**
+     * Go back to the start of the token cut by the end of the data.
+     */
+    void rewind()
+    {
+        this.cursor = this.mark;
+    }
+
+    private void ensureCapacity(int count)
+    {
+        if (this.limit + count <= this.buffer.length)
+        {
+            return;
+        }
+
+        // the data before the current token is not needed anymore
+        int start = this.mark;
+        int size = this.limit - start;
+        char[] buffer = size + count <= this.buffer.length
+                ? this.buffer
+                : new char[Math.max(2 * this.buffer.length, size + count)];
+        System.arraycopy(this.buffer, start, buffer, 0, size);
+        this.buffer = buffer;
+        this.discard(start);
+    }
+
+    @Override
+    int charAt(int index)
+    {
+        return this.buffer[index];
+    }
+
+    @Override
+    int indexOf(char c)
+    {
+        for (int i = this.cursor; i < this.limit; ++i)
+        {
+            if (this.buffer[i] == c)
+            {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    @Override
+    int read()
+    {
+        if (this.isEnded)
+        {
+            return -1;
+        }
+
+        throw NEED_INPUT;
+    }
+
+    @Override
+    String decode(int start, int end)
+    {
+        return new String(this.buffer, start, end - start);
+    }
+
+    /**
+     * Thrown when a token is cut by the end of the data.
+     */
+    static final class NeedInput extends RuntimeException
+    {
+        private static final long serialVersionUID = 1L;
+
+        private NeedInput()
+        {
+            super("More input is needed", null, false, false);
+        }
+    }
+}
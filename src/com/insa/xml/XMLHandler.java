@@ -0,0 +1,43 @@
+package com.insa.xml;
+
+/**
+ * Receive the events of a document while it is parsed, without building any tree.
+ * The methods do nothing by default, a handler only overrides what it needs.
+ * @author Dorian Terbah
+ */
+public interface XMLHandler
+{
+    /**
+     * Called when a tag is opened.
+     * @param tag The tag of the element.
+     * @param attributes The attributes of the element, only readable during the call.
+     * @param isSelfClosing true if the element is self closing, its end follows immediately.
+     */
+    default void startElement(String tag, XMLAttributes attributes, boolean isSelfClosing)
+    {
+    }
+    
+    /**
+     * Called for a text of the current element. The leading whitespaces and the line feeds are not kept.
+     * @param text The text.
+     */
+    default void text(String text)
+    {
+    }
+    
+    /**
+     * Called when a tag is closed.
+     * @param tag The tag of the element.
+     */
+    default void endElement(String tag)
+    {
+    }
+    
+    /**
+     * Called for a comment.
+     * @param comment The content of the comment.
+     */
+    default void comment(String comment)
+    {
+    }
+}
@@ -0,0 +1,147 @@
+package com.insa.xml;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Tokenizer over a UTF-8 file mapped in memory, scanned in place.
+ * The window is the mapped segment itself, so the bytes are never copied to the heap,
+ * only the ranges decoded into Strings are. When a token runs past the end of a segment,
+ * the next segment is mapped from the start of the token and the previous one is dropped,
+ * so a file bigger than the heap (or than 2 GB) is never mapped as a whole.
+ * @author Dorian Terbah
+ */
+final class XMLMappedTokenizer extends XMLTokenizer
+{
+    static final int SEGMENT_SIZE = 1 << 28;
+
+    private final int segmentSize;
+    private FileChannel channel;
+    private long size;
+    private MappedByteBuffer segment;
+
+    // a second view of the segment for the bulk reads of decode
+    private ByteBuffer view;
+    private byte[] bytes;
+
+    XMLMappedTokenizer()
+    {
+        this(SEGMENT_SIZE);
+    }
+
+    /**
+     * Create a tokenizer which maps the files by segments of a given size.
+     * @param segmentSize The size of the segments, a segment holding a longer token is bigger
+     */
+    XMLMappedTokenizer(int segmentSize)
+    {
+        this.segmentSize = segmentSize;
+        this.channel = null;
+        this.size = 0;
+        this.segment = null;
+        this.view = null;
+        this.bytes = new byte[XMLByteTokenizer.BUFFER_SIZE];
+    }
+
+    /**
+     * Put the cursor at the beginning of a new document.
+     * @param channel The channel of the new document, <code>null</code> to release the previous one
+     */
+    void reset(FileChannel channel)
+    {
+        this.channel = channel;
+        this.size = -1;
+        this.segment = null;
+        this.view = null;
+        if (this.bytes.length > 4 * XMLByteTokenizer.BUFFER_SIZE)
+        {
+            // don't keep the buffer grown by a big value of the previous document
+            this.bytes = new byte[XMLByteTokenizer.BUFFER_SIZE];
+        }
+
+        this.reset(0, 0);
+    }
+
+    @Override
+    int charAt(int index)
+    {
+        return this.segment.get(index) & 0xFF;
+    }
+
+    @Override
+    int indexOf(char c)
+    {
+        byte b = (byte) c;
+        for (int i = this.cursor; i < this.limit; ++i)
+        {
+            if (this.segment.get(i) == b)
+            {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    @Override
+    int read()
+    {
+        try
+        {
+            if (this.size < 0)
+            {
+                this.size = this.channel.size();
+            }
+
+            // the bytes before the current token are not needed anymore
+            long window = this.getOffset() - this.cursor;
+            long start = window + this.mark;
+            long end = window + this.limit;
+            if (end >= this.size)
+            {
+                return -1;
+            }
+
+            long count = Math.min(Math.max(this.segmentSize, 2 * (end - start)), this.size - start);
+            if (count > Integer.MAX_VALUE)
+            {
+                throw new XMLParsingException("A token is longer than 2 GB at " + start);
+            }
+
+            this.segment = this.channel.map(FileChannel.MapMode.READ_ONLY, start, count);
+            this.view = this.segment.duplicate();
+            this.discard(this.mark);
+
+            int read = (int) count - this.limit;
+            this.limit = (int) count;
+            return read;
+        } catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    boolean hasByteUnits()
+    {
+        return true;
+    }
+
+    @Override
+    String decode(int start, int end)
+    {
+        int length = end - start;
+        if (length > this.bytes.length)
+        {
+            this.bytes = new byte[Math.max(length, 2 * this.bytes.length)];
+        }
+
+        this.view.position(start);
+        this.view.get(this.bytes, 0, length);
+        return new String(this.bytes, 0, length, StandardCharsets.UTF_8);
+    }
+}
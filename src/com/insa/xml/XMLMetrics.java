@@ -0,0 +1,31 @@
+package com.insa.xml;
+
+/**
+ * Receive the measures of the parses and of the lookups, to export them to a monitoring system.
+ * The parses are measured by a parser configured with XMLParser.withMetrics, the lookups
+ * of all the trees once XMLNode.setMetrics is called. Nothing is measured by default,
+ * and the methods do nothing by default, a metrics only overrides what it needs.
+ * The methods are called by the threads of the parses and of the lookups, at the same time.
+ * @author Dorian Terbah
+ */
+public interface XMLMetrics
+{
+    /**
+     * Called at the end of every successful parse.
+     * @param stats The measures of the parse.
+     */
+    default void parsed(ParseStats stats)
+    {
+    }
+
+    /**
+     * Called at the end of every lookup in a tree: getElementsByTag, getElementsByAttribute,
+     * getElementById, select and selectFirst.
+     * @param query The name of the lookup method.
+     * @param results The number of found nodes.
+     * @param nanos The time of the lookup, in nanoseconds.
+     */
+    default void queried(String query, int results, long nanos)
+    {
+    }
+}
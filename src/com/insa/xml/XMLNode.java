@@ -1,10 +1,19 @@
 package com.insa.xml;
 
-import java.util.Map;
-import java.util.LinkedHashMap;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.List;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  *
@@ -14,7 +23,7 @@ public class XMLNode
 {
     private String tag;
     private String text;
-    private Map<String, String> attributes;
+    private AttributeList attributes;
     private boolean isSelfClosing;
     
     private XMLNode parent;
@@ -22,33 +31,37 @@ public class XMLNode
     private XMLNode previousSibling;
     private List<XMLNode> children;
     
+    // a lazy node reads its parts from the source the first time they are used
+    private static final int PENDING_HEADER = 1;
+    private static final int PENDING_CONTENT = 2;
+    private static final int PENDING_SIBLING = 4;
+    private LazyDocument document;
+    private int offset;
+    private int pending;
+    
+    // the index of the document, only set when the document is indexed
+    private DocumentIndex index;
+    
+    // the receiver of the lookup measures of all the trees, only set when they are measured
+    private static volatile XMLMetrics metrics;
+    
     int level;
     
+    /**
+     * Copy a node without its children, its parent nor its siblings.
+     * The Strings are immutable, they are shared by the copy.
+     */
     private XMLNode(XMLNode node)
     {
-        this.tag = new String(node.tag);
-        this.text = new String(node.text);
-        this.isSelfClosing = node.isSelfClosing;
-        this.attributes = new LinkedHashMap<>();
-        this.children = new ArrayList<>();
-        this.level = level;
-        
-        // clone the attributes
-        for (Map.Entry<String, String> entry : node.attributes.entrySet())
-        {
-            String key = new String(entry.getKey());
-            String value = new String(entry.getValue());
-            this.attributes.put(key, value);
-        }
-        
-        for (XMLNode child : node.children)
+        this(node.isSelfClosing(), node.level);
+        this.tag = node.getTag();
+        this.text = node.getText();
+        AttributeList attributes = node.getAttributeList();
+        for (int i = 0; attributes != null && i < attributes.size(); ++i)
         {
-            this.children.add(child.clone());
+            Attribute attribute = attributes.get(i);
+            this.setAttribute(attribute.name, attribute.value);
         }
-        
-        this.parent = node.parent.clone();
-        this.previousSibling = node.previousSibling.clone();
-        this.nextSibling = node.nextSibling.clone();
     }
     
     public XMLNode()
@@ -62,12 +75,19 @@ public class XMLNode
         this.level = level;
         this.text = "";
         this.isSelfClosing = isSelfClosing;
-        this.attributes = new LinkedHashMap<>();
+        
+        // the attributes are only allocated with the first one
+        this.attributes = null;
         this.parent = null;
         
         this.children = new ArrayList<>();
         this.previousSibling = null;
         this.nextSibling = null;
+        
+        this.document = null;
+        this.offset = 0;
+        this.pending = 0;
+        this.index = null;
     }
     
     public XMLNode(boolean isSelfClosing, XMLNode parent)
@@ -77,13 +97,187 @@ public class XMLNode
     }
     
     /**
-     * Clone the current XMLNode 
+     * Make the current node lazy: its parts will be read from the source when they are used.
+     * @param document The source of the node.
+     * @param offset The position of the start tag of the node in the source.
+     * @param isTopLevel true if the next top level node is read from the source too
+     */
+    void setSource(LazyDocument document, int offset, boolean isTopLevel)
+    {
+        this.document = document;
+        this.offset = offset;
+        this.pending = PENDING_HEADER | PENDING_CONTENT | (isTopLevel ? PENDING_SIBLING : 0);
+    }
+    
+    /**
+     * Read the tag, the attributes and the closing state of a lazy node.
+     */
+    private void header()
+    {
+        if ((this.pending & PENDING_HEADER) != 0)
+        {
+            this.pending &= ~PENDING_HEADER;
+            this.document.readHeader(this, this.offset);
+            this.releaseSource();
+        }
+    }
+    
+    /**
+     * Read the text and the children of a lazy node.
+     */
+    private void content()
+    {
+        if ((this.pending & PENDING_CONTENT) != 0)
+        {
+            this.pending &= ~PENDING_CONTENT;
+            this.document.readContent(this, this.offset);
+            this.releaseSource();
+        }
+    }
+    
+    /**
+     * Read the next sibling of a lazy top level node.
+     */
+    private void sibling()
+    {
+        if ((this.pending & PENDING_SIBLING) != 0)
+        {
+            this.pending &= ~PENDING_SIBLING;
+            this.document.readSibling(this, this.offset);
+            this.releaseSource();
+        }
+    }
+    
+    DocumentIndex getIndex()
+    {
+        return this.index;
+    }
+    
+    void setIndex(DocumentIndex index)
+    {
+        this.index = index;
+    }
+    
+    /**
+     * Index the tags of the whole document of the current node, so getElementsByTag
+     * called on the root costs the size of its result instead of a walk of the document.
+     * The index is then kept up to date by the changes of the tree.
+     * A lazy document is entirely read by this call.
+     */
+    public void buildTagIndex()
+    {
+        this.createIndex().indexTags();
+    }
+    
+    /**
+     * Index the values of an attribute in the whole document of the current node,
+     * so getElementsByAttribute called on the root with a value, and getElementById
+     * for the attribute id, cost the size of their result instead of a walk of the document.
+     * The index is then kept up to date by the changes of the tree and of the attributes.
+     * A lazy document is entirely read by this call.
+     * @param attributeName The name of the indexed attribute.
+     */
+    public void buildAttributeIndex(String attributeName)
+    {
+        this.createIndex().indexAttribute(attributeName);
+    }
+    
+    /**
+     * Get the index of the document of the current node, attached to the root at the first call.
+     */
+    private DocumentIndex createIndex()
+    {
+        XMLNode root = this;
+        while (root.parent != null)
+        {
+            root = root.parent;
+        }
+        
+        while (root.previousSibling != null)
+        {
+            root = root.previousSibling;
+        }
+        
+        if (root.index == null)
+        {
+            new DocumentIndex(root).addDocument();
+        }
+        
+        return root.index;
+    }
+    
+    /**
+     * @return true if the current node is the root of an indexed document
+     */
+    private boolean isIndexedRoot()
+    {
+        return this.index != null && this.index.getRoot() == this;
+    }
+    
+    /**
+     * Unlink the current node from its siblings and remove it from the index of its document.
+     * The node must be removed from the children of its parent by the caller.
+     */
+    private void unlink()
+    {
+        this.sibling();
+        if (this.index != null)
+        {
+            this.index.remove(this);
+        }
+        
+        if (this.previousSibling != null)
+        {
+            this.previousSibling.nextSibling = this.nextSibling;
+        }
+        
+        if (this.nextSibling != null)
+        {
+            this.nextSibling.previousSibling = this.previousSibling;
+        }
+        
+        this.previousSibling = null;
+        this.nextSibling = null;
+        this.parent = null;
+    }
+    
+    private void releaseSource()
+    {
+        if (this.pending == 0)
+        {
+            this.document = null;
+        }
+    }
+    
+    /**
+     * Clone the current XMLNode and its descendants, without recursion.
+     * The copy has no parent nor siblings, and it is not indexed.
      * @return The new copy of the current XMLNode
      */
     @Override
     public XMLNode clone()
     {
-        return new XMLNode(this);
+        XMLNode copy = new XMLNode(this);
+        
+        // the nodes whose children are not copied yet, with their copy
+        ArrayDeque<XMLNode> nodes = new ArrayDeque<>();
+        ArrayDeque<XMLNode> copies = new ArrayDeque<>();
+        nodes.push(this);
+        copies.push(copy);
+        while (!nodes.isEmpty())
+        {
+            XMLNode node = nodes.pop();
+            XMLNode parent = copies.pop();
+            for (XMLNode child : node.getChildren())
+            {
+                XMLNode childCopy = new XMLNode(child);
+                parent.appendChild(childCopy);
+                nodes.push(child);
+                copies.push(childCopy);
+            }
+        }
+        
+        return copy;
     }
     
     /**
@@ -93,6 +287,9 @@ public class XMLNode
      */
     public XMLNode setNextSibling(XMLNode node)
     {
+        // the given node replaces the sibling of the source
+        this.pending &= ~PENDING_SIBLING;
+        this.releaseSource();
         if (node != null)
         {   
             node.previousSibling = this;
@@ -101,6 +298,10 @@ public class XMLNode
         }
         
         this.nextSibling = node;
+        if (node != null && this.index != null)
+        {
+            this.index.add(node);
+        }
         
         return this;
     }
@@ -111,6 +312,7 @@ public class XMLNode
      */
     public XMLNode next()
     {
+        this.sibling();
         return this.nextSibling;
     }
     
@@ -143,15 +345,32 @@ public class XMLNode
     }
     
     /**
-     * Append a child for the current node
+     * Append a child for the current node.
+     * The child is linked as the next sibling of the last child.
      * @param node The node to append
      * @return The current node
      */
     public XMLNode appendChild(XMLNode node)
     {
+        this.content();
+        XMLNode last = this.children.isEmpty() ? null : this.children.get(this.children.size() - 1);
+        if (last != null)
+        {
+            last.nextSibling = node;
+        }
+        
+        node.previousSibling = last;
+        node.nextSibling = null;
+        node.pending &= ~PENDING_SIBLING;
+        node.releaseSource();
         this.children.add(node);
         node.parent = this;
         node.level = this.level + 1;
+        if (this.index != null)
+        {
+            this.index.add(node);
+        }
+        
         return this;
     }
     
@@ -181,10 +400,9 @@ public class XMLNode
         XMLNode node = new XMLNode(false, this);
         
         // configuration of the new node
-        node.level = this.level + 1;
         node.tag = tag;
         node.text = text;
-        this.children.add(node);
+        this.appendChild(node);
         
         return node;
     }
@@ -197,57 +415,16 @@ public class XMLNode
      */
     public List<XMLNode> removeSiblingsByTag(String tag)
     {
+        XMLNode parent = this.parent;
         List<XMLNode> removedSiblings = this.getSiblingsByTag(tag);
-        XMLNode node = this, next, previous;
-        
-        // next siblgins
-        while (node != null)
+        for (XMLNode node : removedSiblings)
         {
-            next = node.nextSibling;
-            previous = node.previousSibling;
-
-            if (node.tag.equals(tag))
-            {
-                // to delete
-                if (next != null)
-                {
-                    if (previous != null)
-                    {
-                        previous.nextSibling = next;
-                    }
-                    
-                    next.previousSibling = previous;
-                }
-                
-                removedSiblings.add(node);
-            }
-            
-            node = next;
+            node.unlink();
         }
         
-        // previous sibling
-        node = this.previousSibling;
-        while (node != null)
+        if (parent != null && !removedSiblings.isEmpty())
         {
-            next = node.nextSibling;
-            previous = node.previousSibling;
-            if (node.tag.equals(tag))
-            {
-                // to delete
-                if (previous != null)
-                {
-                    if (next != null)
-                    {
-                        next.previousSibling = previous;
-                    }
-                }
-                
-                previous.nextSibling = next;
-                
-                removedSiblings.add(node);
-            }
-            
-            node = previous;
+            parent.children.removeAll(new HashSet<>(removedSiblings));
         }
         
         return removedSiblings;
@@ -272,12 +449,12 @@ public class XMLNode
         
         while (sibling != null)
         {
-            if (sibling.tag.equals(tag))
+            if (sibling.getTag().equals(tag))
             {
                 siblings.add(sibling);
             }
             
-            sibling = sibling.nextSibling;
+            sibling = sibling.next();
         }
         
         return siblings;
@@ -290,24 +467,22 @@ public class XMLNode
      */
     public XMLNode removeSiblingAt(int index)
     {
-        int i;
-        XMLNode node = this.nextSibling;
-        XMLNode next, previous;
+        XMLNode node = this.next();
+        for (int i = 0; i < index && node != null; ++i)
+        {
+            node = node.next();
+        }
         
-        for (i = 0; i < index; ++i, node = node != null ? node.nextSibling : node);
-        next = node.nextSibling;
-        previous = node.previousSibling;
+        if (node == null)
+        {
+            return null;
+        }
         
-        if (next != null)
+        XMLNode parent = node.parent;
+        node.unlink();
+        if (parent != null)
         {
-            if (previous != null)
-            {
-                previous.nextSibling = next;
-                if (next != null)
-                {
-                    next.previousSibling = previous;
-                }
-            }
+            parent.children.remove(node);
         }
         
         return node;
@@ -319,6 +494,7 @@ public class XMLNode
      */
     public List<XMLNode> getChildren()
     {
+        this.content();
         return this.children;
     }
     
@@ -331,7 +507,16 @@ public class XMLNode
     public List<XMLNode> removeChildrenByTag(String tag)
     {
         List<XMLNode> removedChildren = this.getChildrenByTag(tag);
-        this.children.removeAll(removedChildren);
+        for (XMLNode node : removedChildren)
+        {
+            node.unlink();
+        }
+        
+        if (!removedChildren.isEmpty())
+        {
+            this.children.removeAll(new HashSet<>(removedChildren));
+        }
+        
         return removedChildren;
     }
     
@@ -343,8 +528,9 @@ public class XMLNode
      */
     public List<XMLNode> getChildrenByTag(String tag)
     {
+        this.content();
         return this.children.stream()
-                    .filter(node -> node.tag.equals(tag))
+                    .filter(node -> node.getTag().equals(tag))
                     .collect(Collectors.toList());
     }
     
@@ -355,12 +541,15 @@ public class XMLNode
      */
     public XMLNode removeChildAt(int index)
     {
-        if (index < 0 || index > this.children.size())
+        this.content();
+        if (index < 0 || index >= this.children.size())
         {
             return null;
         }
         
-        return this.children.remove(index);
+        XMLNode node = this.children.remove(index);
+        node.unlink();
+        return node;
     }
     
     /**
@@ -370,11 +559,29 @@ public class XMLNode
      */
     public XMLNode getElementById(String id)
     {
-        List<XMLNode> availableNodes = this.getElementsByAttribute("id")
-                    .stream()
-                    .filter(node -> node.attributes.get("id").equals(id))
-                    .collect(Collectors.toList());
-        return availableNodes.isEmpty() ? null : availableNodes.get(0);
+        XMLMetrics metrics = XMLNode.metrics;
+        if (metrics == null)
+        {
+            return this.findElementById(id);
+        }
+        
+        long start = System.nanoTime();
+        XMLNode node = this.findElementById(id);
+        metrics.queried("getElementById", node != null ? 1 : 0, System.nanoTime() - start);
+        return node;
+    }
+    
+    private XMLNode findElementById(String id)
+    {
+        if (this.isIndexedRoot() && this.index.isIndexed("id"))
+        {
+            return this.index.getFirstElementByAttribute("id", id);
+        }
+        
+        // the walk stops at the first match
+        return this.streamElementsByAttribute("id", id)
+                    .findFirst()
+                    .orElse(null);
     }
     
     /**
@@ -384,28 +591,213 @@ public class XMLNode
      */
     public List<XMLNode> getElementsByTag(String tag)
     {
-        List<XMLNode> nodes = new ArrayList<>();
-        if (this.tag.equals(tag))
+        XMLMetrics metrics = XMLNode.metrics;
+        if (metrics == null)
         {
-            nodes.add(this);
+            return this.findElementsByTag(tag);
         }
         
-        // look at all the siblings
-        if (this.nextSibling != null)
+        long start = System.nanoTime();
+        List<XMLNode> nodes = this.findElementsByTag(tag);
+        metrics.queried("getElementsByTag", nodes.size(), System.nanoTime() - start);
+        return nodes;
+    }
+    
+    private List<XMLNode> findElementsByTag(String tag)
+    {
+        if (this.isIndexedRoot())
+        {
+            List<XMLNode> nodes = this.index.getElementsByTag(tag);
+            if (nodes != null)
+            {
+                return nodes;
+            }
+        }
+        
+        return this.streamElementsByTag(tag).collect(Collectors.toList());
+    }
+    
+    /**
+     * Retrieve all of the nodes with a specific tag, as getElementsByTag does, on several threads.
+     * The tree is splitted by children into tasks while the threads of the pool are short of tasks.
+     * The tree must not be changed during the search, and a lazy tree must be entirely read before.
+     * @param tag The tag of the researched nodes
+     * @param pool The pool of the threads
+     * @return The list of all of the nodes with the specific tag, in document order
+     */
+    public List<XMLNode> getElementsByTag(String tag, ForkJoinPool pool)
+    {
+        XMLMetrics metrics = XMLNode.metrics;
+        if (metrics == null)
         {
-            nodes.addAll(this.nextSibling.getElementsByTag(tag));
+            return this.findElementsByTag(tag, pool);
         }
         
-        // search into the children of the current node the elements (deep)
-        if (!this.children.isEmpty())
+        long start = System.nanoTime();
+        List<XMLNode> nodes = this.findElementsByTag(tag, pool);
+        metrics.queried("getElementsByTag", nodes.size(), System.nanoTime() - start);
+        return nodes;
+    }
+    
+    private List<XMLNode> findElementsByTag(String tag, ForkJoinPool pool)
+    {
+        if (this.isIndexedRoot())
         {
-            XMLNode child = this.children.get(0);
-            nodes.addAll(child.getElementsByTag(tag));
+            List<XMLNode> nodes = this.index.getElementsByTag(tag);
+            if (nodes != null)
+            {
+                return nodes;
+            }
         }
         
+        return ParallelSearch.search(this, node -> node.getTag().equals(tag), pool);
+    }
+    
+    /**
+     * Get a list of nodes with the specified attributeName, as getElementsByAttribute does, on several threads.
+     * The tree must not be changed during the search, and a lazy tree must be entirely read before.
+     * @param attributeName The name of the specific attribute.
+     * @param pool The pool of the threads
+     * @return The nodes with the specified attributeName, in document order
+     */
+    public List<XMLNode> getElementsByAttribute(String attributeName, ForkJoinPool pool)
+    {
+        XMLMetrics metrics = XMLNode.metrics;
+        if (metrics == null)
+        {
+            return this.findElementsByAttribute(attributeName, pool);
+        }
+        
+        long start = System.nanoTime();
+        List<XMLNode> nodes = this.findElementsByAttribute(attributeName, pool);
+        metrics.queried("getElementsByAttribute", nodes.size(), System.nanoTime() - start);
         return nodes;
     }
     
+    private List<XMLNode> findElementsByAttribute(String attributeName, ForkJoinPool pool)
+    {
+        return ParallelSearch.search(this, node -> node.hasAttribute(attributeName), pool);
+    }
+    
+    /**
+     * Set the metrics which receive the measures of the lookups of all the trees:
+     * getElementsByTag, getElementsByAttribute, getElementById, select and selectFirst.
+     * Without metrics, a lookup only reads one field more.
+     * @param metrics The receiver of the measures, <code>null</code> to measure nothing
+     */
+    public static void setMetrics(XMLMetrics metrics)
+    {
+        XMLNode.metrics = metrics;
+    }
+    
+    /**
+     * Get the nodes selected by a path, see XMLPath for the syntax.
+     * The path is compiled once and then kept in a cache.
+     * @param path The path, relative to the current node.
+     * @return The selected nodes
+     */
+    public List<XMLNode> select(String path)
+    {
+        XMLMetrics metrics = XMLNode.metrics;
+        if (metrics == null)
+        {
+            return XMLPath.compile(path).evaluate(this);
+        }
+        
+        long start = System.nanoTime();
+        List<XMLNode> nodes = XMLPath.compile(path).evaluate(this);
+        metrics.queried("select", nodes.size(), System.nanoTime() - start);
+        return nodes;
+    }
+    
+    /**
+     * Get the first node selected by a path, see XMLPath for the syntax.
+     * @param path The path, relative to the current node.
+     * @return The first selected node if exists, else <code>null</code>
+     */
+    public XMLNode selectFirst(String path)
+    {
+        XMLMetrics metrics = XMLNode.metrics;
+        if (metrics == null)
+        {
+            return XMLPath.compile(path).evaluateFirst(this);
+        }
+        
+        long start = System.nanoTime();
+        XMLNode node = XMLPath.compile(path).evaluateFirst(this);
+        metrics.queried("selectFirst", node != null ? 1 : 0, System.nanoTime() - start);
+        return node;
+    }
+    
+    /**
+     * Walk lazily the current node, its next siblings and all of their descendants, in document order.
+     * The walk doesn't use the call stack, whatever the depth or the width of the document.
+     * The tree must not be changed while the iterator is used.
+     * @return The iterator of the nodes
+     */
+    public Iterator<XMLNode> iterator()
+    {
+        return new XMLNodeIterator(this, false, null);
+    }
+    
+    /**
+     * Walk lazily the current node, its next siblings and all of their descendants, in document order.
+     * @return The stream of the nodes
+     */
+    public Stream<XMLNode> stream()
+    {
+        return stream(new XMLNodeIterator(this, false, null));
+    }
+    
+    /**
+     * Walk lazily the current node, its next siblings and all of their descendants, level by level.
+     * @return The stream of the nodes
+     */
+    public Stream<XMLNode> streamBreadthFirst()
+    {
+        return stream(new XMLNodeIterator(this, true, null));
+    }
+    
+    /**
+     * Find lazily the nodes with a specific tag, in document order.
+     * The nodes are searched as getElementsByTag does, but only when they are asked:
+     * findFirst stops the walk at the first match.
+     * @param tag The tag of the researched nodes
+     * @return The stream of the nodes with the specific tag
+     */
+    public Stream<XMLNode> streamElementsByTag(String tag)
+    {
+        return stream(new XMLNodeIterator(this, false, node -> node.getTag().equals(tag)));
+    }
+    
+    /**
+     * Find lazily the nodes with the specified attributeName, in document order.
+     * @param attributeName The name of the specific attribute.
+     * @return The stream of the nodes with the specified attributeName.
+     */
+    public Stream<XMLNode> streamElementsByAttribute(String attributeName)
+    {
+        return stream(new XMLNodeIterator(this, false, node -> node.hasAttribute(attributeName)));
+    }
+    
+    /**
+     * Find lazily the nodes with the specified value of an attribute, in document order.
+     * @param attributeName The name of the specific attribute.
+     * @param attributeValue The value of the attribute.
+     * @return The stream of the nodes with the specified value of the attribute.
+     */
+    public Stream<XMLNode> streamElementsByAttribute(String attributeName, String attributeValue)
+    {
+        Predicate<XMLNode> filter = node -> attributeValue.equals(node.getAttribute(attributeName));
+        return stream(new XMLNodeIterator(this, false, filter));
+    }
+    
+    private static Stream<XMLNode> stream(Iterator<XMLNode> iterator)
+    {
+        Spliterator<XMLNode> spliterator = Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL);
+        return StreamSupport.stream(spliterator, false);
+    }
+    
     /**
      * Remove deeply the nodes with the spcecified tag.
      * @param tag The tag for the removed nodes.
@@ -429,7 +821,28 @@ public class XMLNode
      */
     public String getAttribute(String attributeName)
     {
-        return this.attributes.get(attributeName);
+        this.header();
+        return this.attributes != null ? this.attributes.get(attributeName) : null;
+    }
+    
+    /**
+     * @param attributeName The name of an attribute.
+     * @return true if the current node has the attribute, else false
+     */
+    public boolean hasAttribute(String attributeName)
+    {
+        this.header();
+        return this.attributes != null && this.attributes.contains(attributeName);
+    }
+    
+    /**
+     * Get the attributes of the current node, in their order.
+     * @return The attributes, <code>null</code> if the node has none
+     */
+    AttributeList getAttributeList()
+    {
+        this.header();
+        return this.attributes;
     }
     
     /**
@@ -439,7 +852,17 @@ public class XMLNode
      */
     public void setAttribute(String attributeName, String attributeValue)
     {
-        this.attributes.put(attributeName, attributeValue);
+        this.header();
+        if (this.attributes == null)
+        {
+            this.attributes = new AttributeList();
+        }
+        
+        String previous = this.attributes.put(attributeName, attributeValue);
+        if (this.index != null)
+        {
+            this.index.update(this, attributeName, previous, attributeValue);
+        }
     }
     
     /**
@@ -449,7 +872,14 @@ public class XMLNode
      */
     public String removeAttribute(String attributeName)
     {
-        return this.attributes.remove(attributeName);
+        this.header();
+        String previous = this.attributes != null ? this.attributes.remove(attributeName) : null;
+        if (previous != null && this.index != null)
+        {
+            this.index.update(this, attributeName, previous, null);
+        }
+        
+        return previous;
     }
     
     // --------- Parent methods --------- //
@@ -494,27 +924,55 @@ public class XMLNode
      */
     public List<XMLNode> getElementsByAttribute(String attributeName)
     {
-        List<XMLNode> nodes = new ArrayList<>();
-
-        if (this.attributes.containsKey(attributeName))
+        XMLMetrics metrics = XMLNode.metrics;
+        if (metrics == null)
         {
-            nodes.add(this);
+            return this.findElementsByAttribute(attributeName);
         }
         
-         // look at all the siblings
-        if (this.nextSibling != null)
+        long start = System.nanoTime();
+        List<XMLNode> nodes = this.findElementsByAttribute(attributeName);
+        metrics.queried("getElementsByAttribute", nodes.size(), System.nanoTime() - start);
+        return nodes;
+    }
+    
+    private List<XMLNode> findElementsByAttribute(String attributeName)
+    {
+        return this.streamElementsByAttribute(attributeName).collect(Collectors.toList());
+    }
+    
+    /**
+     * Get a list of nodes with the specified value of an attribute.
+     * @param attributeName The name of the specific attribute.
+     * @param attributeValue The value of the attribute.
+     * @return The nodes with the specified value of the attribute.
+     */
+    public List<XMLNode> getElementsByAttribute(String attributeName, String attributeValue)
+    {
+        XMLMetrics metrics = XMLNode.metrics;
+        if (metrics == null)
         {
-            nodes.addAll(this.nextSibling.getElementsByAttribute(attributeName));
+            return this.findElementsByAttribute(attributeName, attributeValue);
         }
         
-        // search into the children of the current node the elements (deep)
-        if (!this.children.isEmpty())
+        long start = System.nanoTime();
+        List<XMLNode> nodes = this.findElementsByAttribute(attributeName, attributeValue);
+        metrics.queried("getElementsByAttribute", nodes.size(), System.nanoTime() - start);
+        return nodes;
+    }
+    
+    private List<XMLNode> findElementsByAttribute(String attributeName, String attributeValue)
+    {
+        if (this.isIndexedRoot())
         {
-            XMLNode child = this.children.get(0);
-            nodes.addAll(child.getElementsByAttribute(attributeName));
+            List<XMLNode> nodes = this.index.getElementsByAttribute(attributeName, attributeValue);
+            if (nodes != null)
+            {
+                return nodes;
+            }
         }
         
-        return nodes;
+        return this.streamElementsByAttribute(attributeName, attributeValue).collect(Collectors.toList());
     }
     
     /**
@@ -523,6 +981,7 @@ public class XMLNode
      */
     public String getText()
     {
+        this.content();
         return this.text;
     }
     
@@ -532,6 +991,7 @@ public class XMLNode
      */
     public void setText(String text)
     {
+        this.content();
         this.text = text;
     }
     
@@ -541,6 +1001,7 @@ public class XMLNode
      */
     public String getTag()
     {
+        this.header();
         return this.tag;
     }
     
@@ -550,7 +1011,13 @@ public class XMLNode
      */
     public void setTag(String tag)
     {
+        this.header();
+        String previous = this.tag;
         this.tag = tag;
+        if (this.index != null && !previous.equals(tag))
+        {
+            this.index.rename(this, previous);
+        }
     }
     
     /**
@@ -558,6 +1025,7 @@ public class XMLNode
      */
     public boolean isSelfClosing()
     {
+        this.header();
         return this.isSelfClosing;
     }
     
@@ -567,6 +1035,7 @@ public class XMLNode
      */
     public void setIsSelfClosing(boolean isSelfClosing)
     {
+        this.header();
         this.isSelfClosing = isSelfClosing;
     }
     
@@ -576,67 +1045,37 @@ public class XMLNode
         return this.toString(0);
     }
     
+    /**
+     * Get the text of the current node and of its descendants.
+     * @param tabulation The number of spaces per level, 0 to write the node on one line.
+     * @return The text of the node
+     */
     public String toString(int tabulation)
     {
         StringBuilder builder = new StringBuilder();
-        
-        int i;
-        for (i = 0; i < tabulation * this.level; ++i)
+        try
         {
-            builder.append(" ");
-        }
-        
-        builder.append("<")
-               .append(this.tag);
-        
-        // attributes
-        i = 0;
-        for (Map.Entry<String, String> entry : this.attributes.entrySet())
-        {
-            builder.append(" ");
-            String attributeName = entry.getKey();
-            String attributeValue = entry.getValue();
-            builder.append(attributeName)
-                    .append("='")
-                    .append(attributeValue)
-                    .append('"');
-                
-            i++;
-        }
-        
-        if (this.isSelfClosing)
+            this.write(builder, tabulation);
+        } catch (IOException e)
         {
-            builder.append("/>\n");
-            return builder.toString();
+            // a StringBuilder doesn't fail
+            throw new UncheckedIOException(e);
         }
         
-        builder.append(">");
-        builder.append(this.text);
-        
-        
-        for (XMLNode child : this.children)
-        {
-            if (tabulation > 0)
-            {
-                builder.append("\n");
-            }
-            
-            builder.append(child.toString(tabulation));
-        }
-
-        if (!this.children.isEmpty())
-        {
-            builder.append("\n");
-            for (i = 0; i < tabulation * this.level; ++i)
-            {
-                builder.append(" ");
-            }
-        }
-            
-        builder.append("</")
-               .append(this.tag);
-        builder.append(">");
-
         return builder.toString();
     }
+    
+    /**
+     * Write the current node and its descendants to an output, without building their text in memory.
+     * @param output The output: a Writer, a StringBuilder...
+     * @param tabulation The number of spaces per level, 0 to write the node on one line.
+     * @throws IOException If the output fails
+     */
+    public void write(Appendable output, int tabulation) throws IOException
+    {
+        XMLWriter writer = new XMLWriter(output);
+        writer.setTabulation(tabulation);
+        writer.write(this);
+        writer.flush();
+    }
 }
@@ -0,0 +1,124 @@
+package com.insa.xml;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Predicate;
+
+/**
+ * Walk a node, its next siblings and all of their descendants without recursion,
+ * so the depth and the width of the document never grow the call stack.
+ * The nodes are found one by one, when they are asked: a search that stops
+ * at the first match doesn't walk the rest of the document.
+ * The tree must not be changed during the walk.
+ * @author Dorian Terbah
+ */
+final class XMLNodeIterator implements Iterator<XMLNode>
+{
+    private final boolean breadthFirst;
+    private final Predicate<XMLNode> filter;
+
+    // depth first: the nodes to walk, the top is the next one
+    // breadth first: the first nodes of the sibling runs of the next levels
+    private final ArrayDeque<XMLNode> pending;
+
+    // breadth first: the current position in a sibling run
+    private XMLNode run;
+
+    private XMLNode next;
+
+    /**
+     * @param start The first node of the walk.
+     * @param breadthFirst true to walk level by level, false to walk in document order
+     * @param filter The condition of the returned nodes, <code>null</code> to return all of them
+     */
+    XMLNodeIterator(XMLNode start, boolean breadthFirst, Predicate<XMLNode> filter)
+    {
+        this.breadthFirst = breadthFirst;
+        this.filter = filter;
+        this.pending = new ArrayDeque<>();
+        if (breadthFirst)
+        {
+            this.run = start;
+        } else if (start != null)
+        {
+            this.pending.push(start);
+        }
+
+        this.next = this.find();
+    }
+
+    @Override
+    public boolean hasNext()
+    {
+        return this.next != null;
+    }
+
+    @Override
+    public XMLNode next()
+    {
+        XMLNode node = this.next;
+        if (node == null)
+        {
+            throw new NoSuchElementException();
+        }
+
+        this.next = this.find();
+        return node;
+    }
+
+    private XMLNode find()
+    {
+        XMLNode node;
+        while ((node = this.breadthFirst ? this.nextByLevel() : this.nextInOrder()) != null)
+        {
+            if (this.filter == null || this.filter.test(node))
+            {
+                return node;
+            }
+        }
+
+        return null;
+    }
+
+    private XMLNode nextInOrder()
+    {
+        XMLNode node = this.pending.poll();
+        if (node != null)
+        {
+            // the next sibling is walked after the descendants of the node
+            if (node.next() != null)
+            {
+                this.pending.push(node.next());
+            }
+
+            if (!node.getChildren().isEmpty())
+            {
+                this.pending.push(node.getChildren().get(0));
+            }
+        }
+
+        return node;
+    }
+
+    private XMLNode nextByLevel()
+    {
+        if (this.run == null)
+        {
+            this.run = this.pending.pollLast();
+            if (this.run == null)
+            {
+                return null;
+            }
+        }
+
+        XMLNode node = this.run;
+        this.run = node.next();
+        if (!node.getChildren().isEmpty())
+        {
+            this.pending.push(node.getChildren().get(0));
+        }
+
+        return node;
+    }
+}
@@ -1,238 +1,683 @@
 package com.insa.xml;
 
-import java.util.List;
-import java.util.ArrayList;
-import java.util.stream.Collectors;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ForkJoinPool;
 
 /**
- *
+ * Parse XML documents into trees of XMLNode.
+ * A parser has no mutable state: the state of a parse lives in its own
+ * context, so the same parser can be used by several threads at once.
  * @author Dorian Terbah
  */
 public class XMLParser
 {
     private static final XMLParser instance = new XMLParser();
-        
-    private static final char RIGHT_CHEVRON = '>';
-    private static final char LEFT_CHEVRON = '<';
-    private static final char DELIMITER_SIMPLE_QUOTE = '\'';
-    private static final char DELIMITER_DOUBLE_QUOTE = '"';
     
-    private String xml;
-    private String buffer;
+    // one reusable context per thread, only used when the parser asks for it
+    private static final ThreadLocal<ParserContext> contexts = ThreadLocal.withInitial(ParserContext::new);
+    
+    private boolean reuseContexts;
+    private boolean mapFiles;
+    private boolean lazyNodes;
+    private SymbolTable symbols;
+    private boolean cacheValues;
+    private boolean indexTags;
+    private String[] indexedAttributes;
+    private ForkJoinPool pool;
+    private XMLMetrics metrics;
     
     public XMLParser()
     {
-        this.xml = "";
-        this.buffer = "";
+        this.reuseContexts = false;
+        this.mapFiles = false;
+        this.lazyNodes = false;
+        this.symbols = null;
+        this.cacheValues = false;
+        this.indexTags = false;
+        this.indexedAttributes = null;
+        this.pool = null;
+        this.metrics = null;
+    }
+    
+    private XMLParser(XMLParser parser)
+    {
+        this.reuseContexts = parser.reuseContexts;
+        this.mapFiles = parser.mapFiles;
+        this.lazyNodes = parser.lazyNodes;
+        this.symbols = parser.symbols;
+        this.cacheValues = parser.cacheValues;
+        this.indexTags = parser.indexTags;
+        this.indexedAttributes = parser.indexedAttributes;
+        this.pool = parser.pool;
+        this.metrics = parser.metrics;
     }
     
+    /**
+     * Get the shared parser. It can be used by several threads at once.
+     * @return The shared parser
+     */
     public static final XMLParser getInstance()
     {
         return instance;
     }
     
+    /**
+     * Get a copy of the current parser which keeps its buffers and its stack
+     * in a context per thread, instead of allocating them again on every call.
+     * @param reuseContexts true to keep a context per thread
+     * @return The new parser
+     */
+    public XMLParser withReusedContexts(boolean reuseContexts)
+    {
+        XMLParser parser = new XMLParser(this);
+        parser.reuseContexts = reuseContexts;
+        return parser;
+    }
+    
+    /**
+     * Get a copy of the current parser which maps the files in memory and scans
+     * their UTF-8 bytes directly, so a file is never copied into a String.
+     * @param mapFiles true to map the files parsed from a path
+     * @return The new parser
+     */
+    public XMLParser withMappedFiles(boolean mapFiles)
+    {
+        XMLParser parser = new XMLParser(this);
+        parser.mapFiles = mapFiles;
+        return parser;
+    }
+    
+    /**
+     * Get a copy of the current parser which builds lazy trees from the Strings:
+     * a node keeps the position of its start tag in the document, and its tag,
+     * attributes, text and children are only read the first time they are used.
+     * The parse only looks for the root, so the errors in the rest of the
+     * document are thrown when the nodes are used. A lazy tree reads the
+     * document when it is used, it must not be read by several threads at once.
+     * @param lazyNodes true to build lazy trees
+     * @return The new parser
+     */
+    public XMLParser withLazyNodes(boolean lazyNodes)
+    {
+        XMLParser parser = new XMLParser(this);
+        parser.lazyNodes = lazyNodes;
+        return parser;
+    }
+    
+    /**
+     * Get a copy of the current parser which interns the tag names and the
+     * attribute names in a table: all the occurences of a name share the same String.
+     * @param symbols The table of the names, it can be shared by several parsers.
+     * <code>null</code> to create a new String for every name.
+     * @return The new parser
+     */
+    public XMLParser withSymbolTable(SymbolTable symbols)
+    {
+        XMLParser parser = new XMLParser(this);
+        parser.symbols = symbols;
+        return parser;
+    }
+    
+    /**
+     * Get a copy of the current parser which keeps the short texts and
+     * attribute values in a bounded cache, so the repeated values share the same String.
+     * @param cacheValues true to cache the short values
+     * @return The new parser
+     */
+    public XMLParser withValueCache(boolean cacheValues)
+    {
+        XMLParser parser = new XMLParser(this);
+        parser.cacheValues = cacheValues;
+        return parser;
+    }
+    
+    /**
+     * Get a copy of the current parser which indexes the tags of the trees it builds,
+     * so getElementsByTag called on the root does not walk the tree anymore.
+     * A lazy tree is not indexed by the parse, see XMLNode.buildTagIndex.
+     * @param indexTags true to index the tags
+     * @return The new parser
+     */
+    public XMLParser withTagIndex(boolean indexTags)
+    {
+        XMLParser parser = new XMLParser(this);
+        parser.indexTags = indexTags;
+        return parser;
+    }
+    
+    /**
+     * Get a copy of the current parser which indexes the values of some attributes
+     * in the trees it builds, so getElementById and getElementsByAttribute with a value
+     * called on the root do not walk the tree anymore.
+     * A lazy tree is not indexed by the parse, see XMLNode.buildAttributeIndex.
+     * @param attributeNames The names of the indexed attributes, for example "id".
+     * None to index no attribute.
+     * @return The new parser
+     */
+    public XMLParser withAttributeIndex(String... attributeNames)
+    {
+        XMLParser parser = new XMLParser(this);
+        parser.indexedAttributes = attributeNames.length > 0 ? attributeNames.clone() : null;
+        return parser;
+    }
+    
+    /**
+     * Get a copy of the current parser which parses the big Strings on several threads:
+     * the children of the root are found by a fast scan, then parsed by groups on the pool.
+     * The documents made of one root with many records are parsed the fastest.
+     * A document with several top level elements is parsed on one thread.
+     * @param pool The pool of the threads, <code>null</code> to parse on the calling thread
+     * @return The new parser
+     */
+    public XMLParser withForkJoinPool(ForkJoinPool pool)
+    {
+        XMLParser parser = new XMLParser(this);
+        parser.pool = pool;
+        return parser;
+    }
+    
+    /**
+     * Get a copy of the current parser which measures every parse and sends its ParseStats to a metrics.
+     * The time is read twice per token, so a measured parse is a bit slower.
+     * @param metrics The receiver of the measures, <code>null</code> to measure nothing
+     * @return The new parser
+     */
+    public XMLParser withMetrics(XMLMetrics metrics)
+    {
+        XMLParser parser = new XMLParser(this);
+        parser.metrics = metrics;
+        return parser;
+    }
+    
+    /**
+     * Parse a XML document.
+     * @param xml The document
+     * @return The root of the document
+     */
     public XMLNode parse(String xml)
     {
-        this.xml = xml;
-        if (this.xml.charAt(1) == '?')
+        long start = this.metrics != null ? System.nanoTime() : 0;
+        if (this.lazyNodes)
         {
-            this.xml.substring(this.xml.lastIndexOf("?>"));
+            XMLNode root = LazyDocument.parse(xml, this.createSymbols());
+            if (this.metrics != null)
+            {
+                this.metrics.parsed(ParseStats.of(xml.length(), start));
+            }
+            
+            return root;
         }
         
-        this.xml = this.xml.replace("\n", "");
+        if (this.pool != null && xml.length() >= ParallelDocument.MIN_SIZE)
+        {
+            XMLNode root = new ParallelDocument(this, xml).parse(this.pool);
+            if (root != null)
+            {
+                if (this.metrics != null)
+                {
+                    this.metrics.parsed(ParseStats.of(xml.length(), start));
+                }
+                
+                return root;
+            }
+        }
         
-        return this.parse();
+        return this.build(source(xml));
+    }
+    
+    /**
+     * Parse a XML document read through a fixed size buffer.
+     * The reader is not closed.
+     * @param reader The reader of the document
+     * @return The root of the document
+     * @throws IOException If the reader fails
+     */
+    public XMLNode parse(Reader reader) throws IOException
+    {
+        try
+        {
+            return this.build(source(reader));
+        } catch (UncheckedIOException e)
+        {
+            throw e.getCause();
+        }
+    }
+    
+    /**
+     * Parse a XML document read from a stream.
+     * A UTF-8 stream is scanned byte by byte, without decoding the whole document.
+     * The stream is not closed.
+     * @param input The stream of the document
+     * @param charset The charset of the document
+     * @return The root of the document
+     * @throws IOException If the stream fails
+     */
+    public XMLNode parse(InputStream input, Charset charset) throws IOException
+    {
+        try
+        {
+            return this.build(source(input, charset));
+        } catch (UncheckedIOException e)
+        {
+            throw e.getCause();
+        }
+    }
+    
+    /**
+     * Parse a XML file encoded in UTF-8.
+     * The file is mapped in memory if the parser is configured to do it.
+     * @param path The path of the file
+     * @return The root of the document
+     * @throws IOException If the file can't be read
+     */
+    public XMLNode parse(Path path) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ))
+        {
+            return this.build(this.source(channel));
+        } catch (UncheckedIOException e)
+        {
+            throw e.getCause();
+        }
+    }
+    
+    /**
+     * Parse a XML document and send its events to a handler, without building any tree.
+     * @param xml The document
+     * @param handler The handler of the events
+     */
+    public void parse(String xml, XMLHandler handler)
+    {
+        this.parse(source(xml), handler);
+    }
+    
+    /**
+     * Parse a XML document read through a fixed size buffer and send its events to a handler.
+     * The reader is not closed.
+     * @param reader The reader of the document
+     * @param handler The handler of the events
+     * @throws IOException If the reader fails
+     */
+    public void parse(Reader reader, XMLHandler handler) throws IOException
+    {
+        try
+        {
+            this.parse(source(reader), handler);
+        } catch (UncheckedIOException e)
+        {
+            throw e.getCause();
+        }
     }
     
-    private XMLNode parse()
+    /**
+     * Parse a XML document read from a stream and send its events to a handler.
+     * The stream is not closed.
+     * @param input The stream of the document
+     * @param charset The charset of the document
+     * @param handler The handler of the events
+     * @throws IOException If the stream fails
+     */
+    public void parse(InputStream input, Charset charset, XMLHandler handler) throws IOException
     {
-        List<XMLNode> nodes = new ArrayList<>();
-        XMLNode currentNode = null, parentNode = null;
-        int index, level = 0;
-        String tag, text;
+        try
+        {
+            this.parse(source(input, charset), handler);
+        } catch (UncheckedIOException e)
+        {
+            throw e.getCause();
+        }
+    }
+    
+    /**
+     * Parse a XML file encoded in UTF-8 and send its events to a handler.
+     * @param path The path of the file
+     * @param handler The handler of the events
+     * @throws IOException If the file can't be read
+     */
+    public void parse(Path path, XMLHandler handler) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ))
+        {
+            this.parse(this.source(channel), handler);
+        } catch (UncheckedIOException e)
+        {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Parse a XML document into a read only CompactDocument, stored in arrays instead of nodes.
+     * @param xml The document
+     * @return The document
+     */
+    public CompactDocument parseCompact(String xml)
+    {
+        CompactDocument.Builder builder = new CompactDocument.Builder();
+        this.parse(source(xml), builder);
+        return builder.getDocument();
+    }
+
+    /**
+     * Parse a XML document read through a fixed size buffer into a read only CompactDocument.
+     * The reader is not closed.
+     * @param reader The reader of the document
+     * @return The document
+     * @throws IOException If the reader fails
+     */
+    public CompactDocument parseCompact(Reader reader) throws IOException
+    {
+        CompactDocument.Builder builder = new CompactDocument.Builder();
+        this.parse(reader, builder);
+        return builder.getDocument();
+    }
+
+    /**
+     * Parse a XML file encoded in UTF-8 into a read only CompactDocument.
+     * The file is mapped in memory if the parser is configured to do it.
+     * @param path The path of the file
+     * @return The document
+     * @throws IOException If the file can't be read
+     */
+    public CompactDocument parseCompact(Path path) throws IOException
+    {
+        CompactDocument.Builder builder = new CompactDocument.Builder();
+        this.parse(path, builder);
+        return builder.getDocument();
+    }
+
+    /**
+     * Create a reader which pulls the events of a document one by one.
+     * @param xml The document
+     * @return The reader
+     */
+    public XMLReader createReader(String xml)
+    {
+        XMLStringTokenizer tokenizer = new XMLStringTokenizer();
+        tokenizer.reset(xml);
+        tokenizer.setSymbols(this.createSymbols());
+        return new XMLReader(tokenizer, null);
+    }
+    
+    /**
+     * Create a reader which pulls the events of a document read through a fixed size buffer.
+     * Closing the XMLReader closes the reader.
+     * @param reader The reader of the document
+     * @return The reader
+     */
+    public XMLReader createReader(Reader reader)
+    {
+        XMLReaderTokenizer tokenizer = new XMLReaderTokenizer();
+        tokenizer.reset(reader);
+        tokenizer.setSymbols(this.createSymbols());
+        return new XMLReader(tokenizer, reader);
+    }
+    
+    /**
+     * Create a reader which pulls the events of a document read from a stream.
+     * Closing the XMLReader closes the stream.
+     * @param input The stream of the document
+     * @param charset The charset of the document
+     * @return The reader
+     */
+    public XMLReader createReader(InputStream input, Charset charset)
+    {
+        if (!StandardCharsets.UTF_8.equals(charset))
+        {
+            return this.createReader(new InputStreamReader(input, charset));
+        }
         
-        // parse all of the nodes
-        while (!this.xml.isEmpty())
+        XMLByteTokenizer tokenizer = new XMLByteTokenizer();
+        tokenizer.reset(input);
+        tokenizer.setSymbols(this.createSymbols());
+        return new XMLReader(tokenizer, input);
+    }
+    
+    /**
+     * Create a reader which pulls the events of a XML file encoded in UTF-8.
+     * The file is mapped in memory if the parser is configured to do it.
+     * Closing the XMLReader closes the file.
+     * @param path The path of the file
+     * @return The reader
+     * @throws IOException If the file can't be opened
+     */
+    public XMLReader createReader(Path path) throws IOException
+    {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        if (!this.mapFiles)
         {
-            this.buffer = "";            
-            if (this.xml.charAt(0) == LEFT_CHEVRON)
-            {
-                if (this.xml.charAt(1) == '/')
-                {
-                    // end of node
-                    index = this.xml.indexOf(RIGHT_CHEVRON);
-                    this.xml = this.xml.substring(index + 1);
-                    parentNode = (currentNode != null)
-                            ? currentNode.getParent()
-                            : null;
-                    currentNode = parentNode;
-                    --level;
-                } else if (this.xml.substring(1, 4).equals("!--")) 
-                {
-                    // for the momemt, don't take comments
-                    index = this.xml.indexOf("-->") + 3;
-                    if (index == -1)
-                    {
-                        throw new XMLParsingException("Comment malformed");
-                    }
-                    
-                    this.xml = this.xml.substring(index).trim();
-                }
-                else
-                {
-                    // new node
-                    currentNode = new XMLNode(false, level);
+            return this.createReader(Channels.newInputStream(channel), StandardCharsets.UTF_8);
+        }
+        
+        XMLMappedTokenizer tokenizer = new XMLMappedTokenizer();
+        tokenizer.reset(channel);
+        tokenizer.setSymbols(this.createSymbols());
+        return new XMLReader(tokenizer, channel);
+    }
+    
+    /**
+     * Create a parser which builds the tree of a document given piece by piece, without blocking.
+     * The tree is indexed as the trees of this parser.
+     * @param charset The charset of the bytes given to XMLFeedParser.feed
+     * @return The feed parser
+     */
+    public XMLFeedParser createFeedParser(Charset charset)
+    {
+        return new XMLFeedParser(charset, null, this.createRootBuilder(), this.createSymbols());
+    }
 
-                    this.xml = this.xml.substring(1);
-                    currentNode.level = level++;
-                    currentNode.setParent(parentNode);
-                    parentNode = currentNode;
-                    
-                    index = this.xml.indexOf(RIGHT_CHEVRON);
-                    int temp = index;
-                    if (this.xml.charAt(index - 1) == '/')
-                    {
-                        // orphan node
-                        temp = index - 1;
-                        currentNode.setIsSelfClosing(true);
-                    }
-                    
-                    // tag name and attributes
-                    this.buffer = this.xml.substring(0, temp);
-                    this.xml = this.xml.substring(index + 1).trim();
-                    
-                    index = this.buffer.indexOf(" ");
-                    if (index != -1)
-                    {
-                        // the node has attributes
-                        tag = this.buffer.substring(0, index);
-                        this.buffer = this.buffer.substring(index + 1);
-                        while (!this.buffer.isEmpty())
-                        {
-                            Attribute attr = this.nextAttribute();
-                            currentNode.setAttribute(attr.name, attr.value);
-                        }
-                    } else
-                    {
-                        tag = this.buffer;
-                    }
-                    
-                    nodes.add(currentNode);
-                    currentNode.setTag(tag);  
-                }
-            } else
-            {
-                // text value
-                index = this.xml.indexOf(LEFT_CHEVRON);
-                text = this.xml.substring(0, index);
-                this.xml = this.xml.substring(index);
-                if (currentNode.getText().isEmpty())
-                {
-                    currentNode.setText(text);
-                }
-            }
+    /**
+     * Create a parser which sends the events of a document given piece by piece to a handler,
+     * as soon as their data is fed.
+     * @param charset The charset of the bytes given to XMLFeedParser.feed
+     * @param handler The handler of the events
+     * @return The feed parser
+     */
+    public XMLFeedParser createFeedParser(Charset charset, XMLHandler handler)
+    {
+        return new XMLFeedParser(charset, handler, null, this.createSymbols());
+    }
+
+    /**
+     * Open the tokenizer of a source in the context of a parse.
+     */
+    private interface Source
+    {
+        XMLTokenizer open(ParserContext context);
+    }
+    
+    private static Source source(String xml)
+    {
+        return context -> {
+            XMLStringTokenizer tokenizer = context.stringTokenizer();
+            tokenizer.reset(xml);
+            return tokenizer;
+        };
+    }
+    
+    private static Source source(String xml, int start, int end)
+    {
+        return context -> {
+            XMLStringTokenizer tokenizer = context.stringTokenizer();
+            tokenizer.reset(xml, start, end);
+            return tokenizer;
+        };
+    }
+    
+    private static Source source(Reader reader)
+    {
+        return context -> {
+            XMLReaderTokenizer tokenizer = context.readerTokenizer();
+            tokenizer.reset(reader);
+            return tokenizer;
+        };
+    }
+    
+    private static Source source(InputStream input, Charset charset)
+    {
+        if (!StandardCharsets.UTF_8.equals(charset))
+        {
+            return source(new InputStreamReader(input, charset));
         }
         
-        // construction of the tree
-        List<XMLNode> currentNodes;
-        List<XMLNode> availableSiblings = new ArrayList<>();
-        availableSiblings.addAll(nodes);
+        return context -> {
+            XMLByteTokenizer tokenizer = context.byteTokenizer();
+            tokenizer.reset(input);
+            return tokenizer;
+        };
+    }
+    
+    private Source source(FileChannel channel)
+    {
+        if (!this.mapFiles)
+        {
+            return source(Channels.newInputStream(channel), StandardCharsets.UTF_8);
+        }
         
-        while (!nodes.isEmpty())
+        return context -> {
+            XMLMappedTokenizer tokenizer = context.mappedTokenizer();
+            tokenizer.reset(channel);
+            return tokenizer;
+        };
+    }
+    
+    private ParserContext acquireContext()
+    {
+        if (this.reuseContexts)
         {
-            XMLNode node = nodes.get(0);
-
-            // children
-            currentNodes = nodes.stream()
-                                .filter(xmlNode -> {
-                                    if (xmlNode.equals(node))
-                                    {
-                                        return false;
-                                    }
-                                    
-                                    if (xmlNode.getParent() != null)
-                                    {
-                                        if (xmlNode.getParent().equals(node))
-                                        {
-                                            return true;
-                                        }
-                                    }
-                                    
-                                    return false;
-                                })
-                                .collect(Collectors.toList());
-            
-            node.appendChildren(currentNodes);
-            
-            // siblings
-            currentNodes = availableSiblings.stream()
-                                .filter(xmlNode -> xmlNode.getParent() != null 
-                                        ? xmlNode.getParent().equals(node.getParent()) && !xmlNode.equals(node) 
-                                        : false
-                                )
-                                .collect(Collectors.toList());
-            
-            availableSiblings.removeAll(currentNodes);
-            availableSiblings.remove(node);
-            
-            // initialisation of siblings for currentNode
-            currentNode = node;
+            ParserContext context = contexts.get();
             
-            XMLNode previous, next;
-            previous = null;
-            
-            for (int i = 0; i < currentNodes.size(); ++i)
+            // a parse started from a parse (reentrant call) gets its own context
+            if (context.acquire())
             {
-                next = currentNodes.get(i);
-                
-                currentNode.setNextSibling(next);
-                next.setPreviousSibling(previous);
-                
-                previous = currentNode;
-                currentNode = next;
+                return context;
             }
-            
-            nodes.remove(node);
         }
         
-        parentNode = currentNode.getParent();
-        while (parentNode != null)
+        ParserContext context = new ParserContext();
+        context.acquire();
+        return context;
+    }
+    
+    private SymbolCache createSymbols()
+    {
+        return this.symbols != null || this.cacheValues ? new SymbolCache(this.symbols, this.cacheValues) : null;
+    }
+    
+    private XMLTokenizer open(Source source, ParserContext context)
+    {
+        XMLTokenizer tokenizer = source.open(context);
+        tokenizer.setSymbols(context.symbols(this.symbols, this.cacheValues));
+        return tokenizer;
+    }
+    
+    private XMLNode build(Source source)
+    {
+        ParserContext context = this.acquireContext();
+        try
+        {
+            TreeBuilder builder = context.builder.reset(this.indexTags, this.indexedAttributes);
+            this.measure(this.open(source, context), builder);
+            return builder.getRoot();
+        } finally
         {
-            currentNode = parentNode;
-            parentNode = parentNode.getParent();
+            context.release();
         }
-        
-        return currentNode;
     }
     
-    private Attribute nextAttribute()
+    /**
+     * Parse a part of a document made of whole elements.
+     * @param xml The document
+     * @param start The position of the first element of the part
+     * @param end The end of the last element of the part
+     * @param level The level of the elements of the part
+     * @return The first element of the part, the next ones are its siblings
+     */
+    XMLNode parse(String xml, int start, int end, int level)
     {
-        String name = "";
-        String value = "";
-        int index;
-        char delimiter = ' ';
-        
-        index = this.buffer.indexOf("=");
-        name = this.buffer.substring(0, index).trim();
-        this.buffer = this.buffer.substring(index + 1);
-        
-        if (this.buffer.charAt(0) == DELIMITER_DOUBLE_QUOTE)
+        ParserContext context = this.acquireContext();
+        try
         {
-            delimiter = DELIMITER_DOUBLE_QUOTE;
-        } else if (this.buffer.charAt(0) == DELIMITER_SIMPLE_QUOTE)
+            TreeBuilder builder = context.builder.reset().setLevel(level);
+            this.parse(this.open(source(xml, start, end), context), builder);
+            return builder.getRoot();
+        } finally
         {
-            delimiter = DELIMITER_SIMPLE_QUOTE;
-        } else 
+            context.release();
+        }
+    }
+    
+    /**
+     * Get the parser of the root of a document parsed by parts: it indexes the tree as this parser does.
+     * @return The builder of the root
+     */
+    TreeBuilder createRootBuilder()
+    {
+        return new TreeBuilder().reset(this.indexTags, this.indexedAttributes);
+    }
+    
+    /**
+     * Get the tokenizer of a document parsed by parts, with the names and values cache of this parser.
+     * @param xml The document
+     * @return The tokenizer
+     */
+    XMLStringTokenizer createTokenizer(String xml)
+    {
+        XMLStringTokenizer tokenizer = new XMLStringTokenizer();
+        tokenizer.reset(xml);
+        tokenizer.setSymbols(this.createSymbols());
+        return tokenizer;
+    }
+    
+    private void parse(Source source, XMLHandler handler)
+    {
+        ParserContext context = this.acquireContext();
+        try
+        {
+            this.measure(this.open(source, context), handler);
+        } finally
         {
-            throw new XMLParsingException("The attributes values must begin by a quote");
+            context.release();
+        }
+    }
+    
+    /**
+     * Parse a whole document, measured if the parser has a metrics.
+     */
+    private void measure(XMLTokenizer tokenizer, XMLHandler handler)
+    {
+        if (this.metrics == null)
+        {
+            this.parse(tokenizer, handler);
+            return;
         }
         
-        // pass throught the first delimiter
-        this.buffer = this.buffer.substring(1);
-        index = this.buffer.indexOf(delimiter);
-        value = this.buffer.substring(0, index);
+        ParseStats stats = ParseStats.collect(tokenizer, handler);
+        if (handler instanceof TreeBuilder)
+        {
+            // an empty document is not a successful parse
+            ((TreeBuilder) handler).getRoot();
+        }
         
-        this.buffer = this.buffer.substring(index + 1);
-        return new Attribute(name, value);
+        this.metrics.parsed(stats);
+    }
+    
+    private void parse(XMLTokenizer tokenizer, XMLHandler handler)
+    {
+        EventDispatcher dispatcher = new EventDispatcher();
+        int token;
+        while ((token = tokenizer.next()) != XMLTokenizer.END_OF_INPUT)
+        {
+            dispatcher.dispatch(tokenizer, token, handler);
+        }
     }
 }
@@ -0,0 +1,673 @@
+package com.insa.xml;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * A compiled path over the trees of XMLNode, written in a small subset of XPath:
+ * <ul>
+ * <li><code>a/b</code>: the children b of the children a of the context node</li>
+ * <li><code>a//b</code>: the descendants b of the children a</li>
+ * <li><code>/a</code>, <code>//a</code>: from the document of the context node</li>
+ * <li><code>*</code>: any tag</li>
+ * <li><code>[2]</code>, <code>[last()]</code>: the position in the selected children, from 1</li>
+ * <li><code>[@id]</code>, <code>[@id='01']</code>, <code>[@salary&gt;5000]</code>:
+ * the attributes, compared with = != &lt; &lt;= &gt; &gt;=</li>
+ * </ul>
+ * For example <code>/Company/Employee[@salary&gt;5000]/Email</code>.
+ * A path is evaluated in one preorder walk of the tree, without building the intermediate sets
+ * of nodes: every node is tested once, against the steps its ancestors allow. So the nodes are
+ * returned in document order, each once, and the first node is the first one of the document.
+ * The compiled paths are immutable, and the last ones used are kept in a bounded cache by compile.
+ * @author Dorian Terbah
+ */
+public final class XMLPath
+{
+    private static final int CACHE_SIZE = 256;
+
+    // the steps matched by a node are the bits of a long, the bit 0 is the context
+    private static final int MAX_STEPS = 63;
+
+    // the last compiled paths, the least recently used one is removed first
+    private static final Map<String, XMLPath> cache = new LinkedHashMap<String, XMLPath>(16, 0.75f, true)
+    {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, XMLPath> eldest)
+        {
+            return this.size() > CACHE_SIZE;
+        }
+    };
+
+    private static final int EQUAL = 0;
+    private static final int NOT_EQUAL = 1;
+    private static final int LESS = 2;
+    private static final int LESS_OR_EQUAL = 3;
+    private static final int GREATER = 4;
+    private static final int GREATER_OR_EQUAL = 5;
+
+    private final String expression;
+    private final boolean isAbsolute;
+    private final Step[] steps;
+    private final boolean hasCounters;
+
+    private XMLPath(String expression, boolean isAbsolute, Step[] steps)
+    {
+        this.expression = expression;
+        this.isAbsolute = isAbsolute;
+        this.steps = steps;
+
+        boolean hasCounters = false;
+        for (Step step : steps)
+        {
+            hasCounters |= step.hasPositions || step.hasLast;
+        }
+
+        this.hasCounters = hasCounters;
+    }
+
+    /**
+     * Get the compiled form of a path, from the cache if it has been compiled recently.
+     * @param expression The path.
+     * @return The compiled path
+     * @throws XMLParsingException If the path is not valid
+     */
+    public static XMLPath compile(String expression)
+    {
+        XMLPath path;
+        synchronized (cache)
+        {
+            path = cache.get(expression);
+        }
+
+        if (path == null)
+        {
+            path = new Compiler(expression).compile();
+            synchronized (cache)
+            {
+                cache.put(expression, path);
+            }
+        }
+
+        return path;
+    }
+
+    /**
+     * Get the nodes selected by the path.
+     * @param node The context node of the path.
+     * @return The selected nodes
+     */
+    public List<XMLNode> evaluate(XMLNode node)
+    {
+        List<XMLNode> nodes = new ArrayList<>();
+        this.select(node, nodes::add);
+        return nodes;
+    }
+
+    /**
+     * Get the first node selected by the path: the walk stops at the first match.
+     * @param node The context node of the path.
+     * @return The first selected node if exists, else <code>null</code>
+     */
+    public XMLNode evaluateFirst(XMLNode node)
+    {
+        XMLNode[] first = new XMLNode[1];
+        this.select(node, selected -> {
+            first[0] = selected;
+            return false;
+        });
+
+        return first[0];
+    }
+
+    @Override
+    public String toString()
+    {
+        return this.expression;
+    }
+
+    /**
+     * Send the selected nodes to a consumer, in document order.
+     * The bit k + 1 of a node is set when the node is selected by the steps [0, k] of the path,
+     * and the bit 0 when it is the context. A child is tested by the step k when its parent
+     * has the bit k for a child step, or when an ancestor of the child has it for a descendant step.
+     * @param node The context node.
+     * @param consumer Receive the nodes, and returns false to stop the walk.
+     */
+    private void select(XMLNode node, Predicate<XMLNode> consumer)
+    {
+        if (this.steps.length == 0)
+        {
+            return;
+        }
+
+        // the context of an absolute path is the document, it is represented by null
+        long last = 1L << this.steps.length;
+        ArrayDeque<Level> levels = new ArrayDeque<>();
+        Level top = this.level(firstChild(this.isAbsolute ? null : node, node), 1L, 1L);
+        if (top != null)
+        {
+            levels.push(top);
+        }
+
+        while (!levels.isEmpty())
+        {
+            Level level = levels.peek();
+            XMLNode child = level.next;
+            if (child == null)
+            {
+                levels.pop();
+                continue;
+            }
+
+            level.next = child.next();
+            long matched = 0;
+            for (int k = 0; k < this.steps.length; ++k)
+            {
+                if (level.tests(k) && this.steps[k].accept(child, level.positions[k], level.sizes[k]))
+                {
+                    matched |= 1L << (k + 1);
+                }
+            }
+
+            if ((matched & last) != 0 && !consumer.test(child))
+            {
+                return;
+            }
+
+            List<XMLNode> children = child.getChildren();
+            Level next = children.isEmpty() ? null : this.level(children.get(0), matched, level.ancestors | matched);
+            if (next != null)
+            {
+                levels.push(next);
+            }
+        }
+    }
+
+    /**
+     * Create the level of the children of a node.
+     * @param first The first child.
+     * @param matched The bits of the parent.
+     * @param ancestors The bits of the parent and of its ancestors.
+     * @return The level, <code>null</code> if no step tests the children nor their descendants
+     */
+    private Level level(XMLNode first, long matched, long ancestors)
+    {
+        if (first == null)
+        {
+            return null;
+        }
+
+        long tested = 0;
+        for (int k = 0; k < this.steps.length; ++k)
+        {
+            long bits = this.steps[k].isDescendant ? ancestors : matched;
+            if ((bits & (1L << k)) != 0)
+            {
+                tested |= 1L << k;
+            }
+        }
+
+        return tested != 0 ? new Level(this.steps, first, tested, ancestors, this.hasCounters) : null;
+    }
+
+    /**
+     * @param context The context, <code>null</code> for the document
+     * @param node A node of the document
+     * @return The first child of the context, or the root of the document
+     */
+    private static XMLNode firstChild(XMLNode context, XMLNode node)
+    {
+        if (context != null)
+        {
+            List<XMLNode> children = context.getChildren();
+            return children.isEmpty() ? null : children.get(0);
+        }
+
+        XMLNode root = node;
+        while (root.getParent() != null)
+        {
+            root = root.getParent();
+        }
+
+        while (root.previous() != null)
+        {
+            root = root.previous();
+        }
+
+        return root;
+    }
+
+    /**
+     * The children of a node being walked: the next child to test, and for every step
+     * which tests them, the positions reached and the sizes of the conditions.
+     */
+    private static final class Level
+    {
+        // the counters of the paths without positions, only null arrays
+        private static final int[][] NO_COUNTERS = new int[MAX_STEPS][];
+
+        private XMLNode next;
+        private final long tested;
+        private final long ancestors;
+        private final int[][] positions;
+        private final int[][] sizes;
+
+        Level(Step[] steps, XMLNode first, long tested, long ancestors, boolean hasCounters)
+        {
+            this.next = first;
+            this.tested = tested;
+            this.ancestors = ancestors;
+            this.positions = hasCounters ? new int[steps.length][] : NO_COUNTERS;
+            this.sizes = hasCounters ? new int[steps.length][] : NO_COUNTERS;
+            for (int k = 0; hasCounters && k < steps.length; ++k)
+            {
+                if (this.tests(k))
+                {
+                    Step step = steps[k];
+                    this.positions[k] = step.hasPositions ? new int[step.conditions.length] : null;
+                    this.sizes[k] = step.hasLast ? step.sizes(first) : null;
+                }
+            }
+        }
+
+        boolean tests(int k)
+        {
+            return (this.tested & (1L << k)) != 0;
+        }
+    }
+
+    /**
+     * A step of a path: an axis, a tag and conditions.
+     */
+    private static final class Step
+    {
+        private final boolean isDescendant;
+
+        // null for any tag
+        private final String tag;
+        private final Condition[] conditions;
+        private final boolean hasPositions;
+        private final boolean hasLast;
+
+        Step(boolean isDescendant, String tag, List<Condition> conditions)
+        {
+            this.isDescendant = isDescendant;
+            this.tag = tag;
+            this.conditions = conditions.toArray(new Condition[conditions.size()]);
+
+            boolean hasPositions = false, hasLast = false;
+            for (Condition condition : conditions)
+            {
+                hasPositions |= condition.attribute == null;
+                hasLast |= condition.isLast;
+            }
+
+            this.hasPositions = hasPositions;
+            this.hasLast = hasLast;
+        }
+
+        /**
+         * Test a child of the context. The children must be tested in order.
+         * @param node The child.
+         * @param positions The positions reached by the previous children for each condition.
+         * @param sizes The number of children tested by each condition.
+         * @return true if the child is selected
+         */
+        boolean accept(XMLNode node, int[] positions, int[] sizes)
+        {
+            return this.accept(node, positions, sizes, this.conditions.length);
+        }
+
+        private boolean accept(XMLNode node, int[] positions, int[] sizes, int count)
+        {
+            if (this.tag != null && !this.tag.equals(node.getTag()))
+            {
+                return false;
+            }
+
+            for (int i = 0; i < count; ++i)
+            {
+                if (positions != null)
+                {
+                    ++positions[i];
+                }
+
+                if (!this.conditions[i].test(node, positions, sizes, i))
+                {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+        /**
+         * Count the children tested by each condition, for the conditions on the last position.
+         */
+        int[] sizes(XMLNode first)
+        {
+            int[] sizes = new int[this.conditions.length];
+            for (int i = 0; i < this.conditions.length; ++i)
+            {
+                if (!this.conditions[i].isLast)
+                {
+                    continue;
+                }
+
+                // the children which pass the previous conditions, whose sizes are already known
+                int[] positions = new int[this.conditions.length];
+                for (XMLNode child = first; child != null; child = child.next())
+                {
+                    if (this.accept(child, positions, sizes, i))
+                    {
+                        ++sizes[i];
+                    }
+                }
+            }
+
+            return sizes;
+        }
+    }
+
+    /**
+     * A condition of a step: a position, or a test on an attribute.
+     */
+    private static final class Condition
+    {
+        // a position when the attribute is null
+        private final String attribute;
+        private final int position;
+        private final boolean isLast;
+
+        // -1 to only test the presence of the attribute
+        private final int operator;
+        private final String literal;
+        private final double number;
+
+        Condition(int position, boolean isLast)
+        {
+            this.attribute = null;
+            this.position = position;
+            this.isLast = isLast;
+            this.operator = -1;
+            this.literal = null;
+            this.number = Double.NaN;
+        }
+
+        Condition(String attribute, int operator, String literal, double number)
+        {
+            this.attribute = attribute;
+            this.position = 0;
+            this.isLast = false;
+            this.operator = operator;
+            this.literal = literal;
+            this.number = number;
+        }
+
+        boolean test(XMLNode node, int[] positions, int[] sizes, int index)
+        {
+            if (this.attribute == null)
+            {
+                return positions[index] == (this.isLast ? sizes[index] : this.position);
+            }
+
+            String value = node.getAttribute(this.attribute);
+            if (value == null)
+            {
+                return false;
+            }
+
+            if (this.operator < 0)
+            {
+                return true;
+            }
+
+            if (this.literal != null && (this.operator == EQUAL || this.operator == NOT_EQUAL))
+            {
+                // a quoted literal is compared as a String
+                return value.equals(this.literal) == (this.operator == EQUAL);
+            }
+
+            double number = toNumber(value);
+            double other = this.literal != null ? toNumber(this.literal) : this.number;
+
+            switch (this.operator)
+            {
+                case EQUAL:
+                    return number == other;
+                case NOT_EQUAL:
+                    return number != other;
+                case LESS:
+                    return number < other;
+                case LESS_OR_EQUAL:
+                    return number <= other;
+                case GREATER:
+                    return number > other;
+                default:
+                    return number >= other;
+            }
+        }
+
+        private static double toNumber(String value)
+        {
+            try
+            {
+                return Double.parseDouble(value.trim());
+            } catch (NumberFormatException e)
+            {
+                return Double.NaN;
+            }
+        }
+    }
+
+    /**
+     * Read a path expression into its steps.
+     */
+    private static final class Compiler
+    {
+        private final String expression;
+        private int cursor;
+
+        Compiler(String expression)
+        {
+            this.expression = expression;
+            this.cursor = 0;
+        }
+
+        XMLPath compile()
+        {
+            List<Step> steps = new ArrayList<>();
+            this.skipSpaces();
+            boolean isAbsolute = this.peek() == '/';
+            boolean isDescendant = false;
+            if (isAbsolute)
+            {
+                ++this.cursor;
+                isDescendant = this.accept('/');
+            }
+
+            steps.add(this.step(isDescendant));
+            while (this.cursor < this.expression.length())
+            {
+                this.expect('/');
+                isDescendant = this.accept('/');
+                steps.add(this.step(isDescendant));
+                if (steps.size() > MAX_STEPS)
+                {
+                    throw this.error("more than " + MAX_STEPS + " steps");
+                }
+            }
+
+            return new XMLPath(this.expression, isAbsolute, steps.toArray(new Step[steps.size()]));
+        }
+
+        private Step step(boolean isDescendant)
+        {
+            this.skipSpaces();
+            String tag = this.accept('*') ? null : this.name();
+            List<Condition> conditions = new ArrayList<>();
+            this.skipSpaces();
+            while (this.accept('['))
+            {
+                conditions.add(this.condition());
+                this.expect(']');
+                this.skipSpaces();
+            }
+
+            return new Step(isDescendant, tag, conditions);
+        }
+
+        private Condition condition()
+        {
+            this.skipSpaces();
+            if (this.expression.startsWith("last()", this.cursor))
+            {
+                this.cursor += "last()".length();
+                this.skipSpaces();
+                return new Condition(0, true);
+            }
+
+            if (!this.accept('@'))
+            {
+                int start = this.cursor;
+                while (this.cursor < this.expression.length() && Character.isDigit(this.expression.charAt(this.cursor)))
+                {
+                    ++this.cursor;
+                }
+
+                if (start == this.cursor)
+                {
+                    throw this.error("position or attribute expected");
+                }
+
+                int position = Integer.parseInt(this.expression.substring(start, this.cursor));
+                this.skipSpaces();
+                return new Condition(position, false);
+            }
+
+            String attribute = this.name();
+            this.skipSpaces();
+            int operator = this.operator();
+            if (operator < 0)
+            {
+                return new Condition(attribute, -1, null, Double.NaN);
+            }
+
+            this.skipSpaces();
+            char quote = this.peek();
+            if (quote == '\'' || quote == '"')
+            {
+                int end = this.expression.indexOf(quote, this.cursor + 1);
+                if (end < 0)
+                {
+                    throw this.error("unterminated literal");
+                }
+
+                String literal = this.expression.substring(this.cursor + 1, end);
+                this.cursor = end + 1;
+                this.skipSpaces();
+                return new Condition(attribute, operator, literal, Double.NaN);
+            }
+
+            int start = this.cursor;
+            while (this.cursor < this.expression.length() && "0123456789.-+eE".indexOf(this.expression.charAt(this.cursor)) >= 0)
+            {
+                ++this.cursor;
+            }
+
+            try
+            {
+                double number = Double.parseDouble(this.expression.substring(start, this.cursor));
+                this.skipSpaces();
+                return new Condition(attribute, operator, null, number);
+            } catch (NumberFormatException e)
+            {
+                this.cursor = start;
+                throw this.error("literal expected");
+            }
+        }
+
+        private int operator()
+        {
+            if (this.accept('='))
+            {
+                return EQUAL;
+            } else if (this.accept('!'))
+            {
+                this.expect('=');
+                return NOT_EQUAL;
+            } else if (this.accept('<'))
+            {
+                return this.accept('=') ? LESS_OR_EQUAL : LESS;
+            } else if (this.accept('>'))
+            {
+                return this.accept('=') ? GREATER_OR_EQUAL : GREATER;
+            }
+
+            return -1;
+        }
+
+        private String name()
+        {
+            int start = this.cursor;
+            while (this.cursor < this.expression.length())
+            {
+                char c = this.expression.charAt(this.cursor);
+                if ("/[]@=!<>*'\" \t".indexOf(c) >= 0)
+                {
+                    break;
+                }
+
+                ++this.cursor;
+            }
+
+            if (start == this.cursor)
+            {
+                throw this.error("name expected");
+            }
+
+            return this.expression.substring(start, this.cursor);
+        }
+
+        private char peek()
+        {
+            return this.cursor < this.expression.length() ? this.expression.charAt(this.cursor) : '\0';
+        }
+
+        private boolean accept(char c)
+        {
+            if (this.peek() == c)
+            {
+                ++this.cursor;
+                return true;
+            }
+
+            return false;
+        }
+
+        private void expect(char c)
+        {
+            if (!this.accept(c))
+            {
+                throw this.error("'" + c + "' expected");
+            }
+        }
+
+        private void skipSpaces()
+        {
+            while (this.peek() == ' ' || this.peek() == '\t')
+            {
+                ++this.cursor;
+            }
+        }
+
+        private XMLParsingException error(String message)
+        {
+            return new XMLParsingException("Invalid path " + this.expression + " at " + this.cursor + ": " + message);
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.insa.xml;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Read a document event by event: the caller pulls the next event when it needs it,
+ * and can stop or skip a whole element at any time.
+ * The events are the same as the ones of XMLHandler: a self closing element
+ * is a START immediately followed by its END.
+ * An error of the source is thrown as an UncheckedIOException.
+ * @author Dorian Terbah
+ */
+public class XMLReader implements Closeable
+{
+    public static final int END_DOCUMENT = XMLTokenizer.END_OF_INPUT;
+    public static final int START = XMLTokenizer.START_TAG;
+    public static final int END = XMLTokenizer.END_TAG;
+    public static final int TEXT = XMLTokenizer.TEXT;
+    public static final int COMMENT = XMLTokenizer.COMMENT;
+
+    private final XMLTokenizer tokenizer;
+    private final Closeable source;
+    private int event;
+    private int depth;
+
+    XMLReader(XMLTokenizer tokenizer, Closeable source)
+    {
+        this.tokenizer = tokenizer;
+        this.source = source;
+        this.event = 0;
+        this.depth = 0;
+    }
+
+    /**
+     * Move to the next event.
+     * @return The type of the event: START, END, TEXT, COMMENT or END_DOCUMENT
+     */
+    public int next()
+    {
+        if (this.event == END)
+        {
+            --this.depth;
+        }
+
+        this.event = this.tokenizer.next();
+        if (this.event == START)
+        {
+            ++this.depth;
+        }
+
+        return this.event;
+    }
+
+    /**
+     * @return The type of the current event
+     */
+    public int getEventType()
+    {
+        return this.event;
+    }
+
+    /**
+     * Get the depth of the current element, the root is at depth 1.
+     * @return The number of open elements, the current one included
+     */
+    public int getDepth()
+    {
+        return this.depth;
+    }
+
+    /**
+     * Get the tag of the current START or END event.
+     * @return The tag
+     */
+    public String getTag()
+    {
+        this.expect(this.event == START || this.event == END, "getTag");
+        return this.tokenizer.getName();
+    }
+
+    /**
+     * Get the attributes of the current START event.
+     * They are only readable until the next event.
+     * @return The attributes
+     */
+    public XMLAttributes getAttributes()
+    {
+        this.expect(this.event == START, "getAttributes");
+        return this.tokenizer.getAttributes();
+    }
+
+    /**
+     * Get an attribute of the current START event.
+     * @param attributeName The name of the attribute.
+     * @return The value of the attribute if exists, else <code>null</code>
+     */
+    public String getAttribute(String attributeName)
+    {
+        return this.getAttributes().getValue(attributeName);
+    }
+
+    /**
+     * Get the text of the current TEXT or COMMENT event.
+     * @return The text
+     */
+    public String getText()
+    {
+        this.expect(this.event == TEXT || this.event == COMMENT, "getText");
+        return this.tokenizer.getText();
+    }
+
+    /**
+     * @return true if the current START or END event is the one of a self closing element
+     */
+    public boolean isSelfClosing()
+    {
+        return (this.event == START || this.event == END) && this.tokenizer.isSelfClosing();
+    }
+
+    /**
+     * Skip the whole content of the current START event, at raw scanning speed:
+     * nothing is decoded. The END of the element becomes the current event.
+     */
+    public void skipSubtree()
+    {
+        this.expect(this.event == START, "skipSubtree");
+        this.tokenizer.skipElement();
+        this.event = END;
+    }
+
+    /**
+     * Close the source of the reader, if the reader opened it.
+     * @throws IOException If the source fails to close
+     */
+    @Override
+    public void close() throws IOException
+    {
+        if (this.source != null)
+        {
+            this.source.close();
+        }
+    }
+
+    private void expect(boolean condition, String method)
+    {
+        if (!condition)
+        {
+            throw new IllegalStateException(method + " is not available for the event " + this.event);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.insa.xml;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+
+/**
+ * Tokenizer over a Reader, read through a refillable buffer.
+ * The buffer only grows when a single token is bigger than it.
+ * @author Dorian Terbah
+ */
+final class XMLReaderTokenizer extends XMLTokenizer
+{
+    static final int BUFFER_SIZE = 8192;
+    
+    private Reader reader;
+    private char[] buffer;
+    
+    XMLReaderTokenizer()
+    {
+        this.reader = null;
+        this.buffer = new char[BUFFER_SIZE];
+    }
+    
+    /**
+     * Put the cursor at the beginning of a new document.
+     * @param reader The reader of the new document, <code>null</code> to release the previous one
+     */
+    void reset(Reader reader)
+    {
+        this.reader = reader;
+        if (this.buffer.length > 4 * BUFFER_SIZE)
+        {
+            // don't keep the buffer grown by a big token of the previous document
+            this.buffer = new char[BUFFER_SIZE];
+        }
+        
+        this.reset(0, 0);
+    }
+    
+    @Override
+    int charAt(int index)
+    {
+        return this.buffer[index];
+    }
+    
+    @Override
+    int indexOf(char c)
+    {
+        for (int i = this.cursor; i < this.limit; ++i)
+        {
+            if (this.buffer[i] == c)
+            {
+                return i;
+            }
+        }
+        
+        return -1;
+    }
+    
+    @Override
+    int read()
+    {
+        if (this.limit == this.buffer.length)
+        {
+            if (this.mark > 0)
+            {
+                // the data before the current token is not needed anymore
+                int count = this.mark;
+                System.arraycopy(this.buffer, count, this.buffer, 0, this.limit - count);
+                this.discard(count);
+            } else
+            {
+                char[] buffer = new char[2 * this.buffer.length];
+                System.arraycopy(this.buffer, 0, buffer, 0, this.limit);
+                this.buffer = buffer;
+            }
+        }
+        
+        try
+        {
+            int count = this.reader.read(this.buffer, this.limit, this.buffer.length - this.limit);
+            if (count > 0)
+            {
+                this.limit += count;
+            }
+            
+            return count;
+        } catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    @Override
+    String decode(int start, int end)
+    {
+        return new String(this.buffer, start, end - start);
+    }
+}
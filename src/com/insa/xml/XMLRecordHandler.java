@@ -0,0 +1,135 @@
+package com.insa.xml;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * Build the elements of a document which match a path, one at a time: each element
+ * is given to a consumer as soon as its end tag is read, then forgotten.
+ * Only the matching elements become trees of XMLNode, so the memory needed by the
+ * parse is the one of the biggest record, whatever the size of the document.
+ * It is used as any handler, for example
+ * <code>parser.parse(reader, new XMLRecordHandler("Company/Employee", consumer))</code>.
+ * <p>
+ * The path is a list of tags separated by '/', <code>*</code> for any tag:
+ * <ul>
+ * <li><code>Employee</code>: the Employee elements at any level</li>
+ * <li><code>Company/Employee</code>: the Employee elements in a Company element</li>
+ * <li><code>/Company/Employee</code>: the Employee elements in the Company root</li>
+ * </ul>
+ * An element in a matching element is a part of the record, it is not a record itself.
+ * @author Dorian Terbah
+ */
+public class XMLRecordHandler implements XMLHandler
+{
+    private final String[] steps;
+    private final boolean isAbsolute;
+    private final Consumer<XMLNode> consumer;
+
+    // the tags of the open elements
+    private String[] tags;
+    private int depth;
+
+    // the builder of the current record, from the depth of its root
+    private final TreeBuilder builder;
+    private int recordDepth;
+
+    /**
+     * @param path The path of the records.
+     * @param consumer Receive every record when it ends.
+     */
+    public XMLRecordHandler(String path, Consumer<XMLNode> consumer)
+    {
+        this.isAbsolute = path.startsWith("/");
+        this.steps = (this.isAbsolute ? path.substring(1) : path).split("/");
+        for (String step : this.steps)
+        {
+            if (step.isEmpty())
+            {
+                throw new XMLParsingException("Invalid path " + path);
+            }
+        }
+
+        this.consumer = consumer;
+        this.tags = new String[16];
+        this.depth = 0;
+        this.builder = new TreeBuilder();
+        this.recordDepth = -1;
+    }
+
+    @Override
+    public void startElement(String tag, XMLAttributes attributes, boolean isSelfClosing)
+    {
+        if (this.depth == this.tags.length)
+        {
+            this.tags = Arrays.copyOf(this.tags, 2 * this.depth);
+        }
+
+        this.tags[this.depth++] = tag;
+        if (this.recordDepth < 0 && this.matches())
+        {
+            this.recordDepth = this.depth;
+            this.builder.reset();
+        }
+
+        if (this.recordDepth > 0)
+        {
+            this.builder.startElement(tag, attributes, isSelfClosing);
+        }
+    }
+
+    @Override
+    public void text(String text)
+    {
+        if (this.recordDepth > 0)
+        {
+            this.builder.text(text);
+        }
+    }
+
+    @Override
+    public void endElement(String tag)
+    {
+        if (this.recordDepth > 0)
+        {
+            this.builder.endElement(tag);
+            if (this.depth == this.recordDepth)
+            {
+                XMLNode record = this.builder.getRoot();
+
+                // the builder doesn't keep the record
+                this.builder.reset();
+                this.recordDepth = -1;
+                this.consumer.accept(record);
+            }
+        }
+
+        if (this.depth > 0)
+        {
+            this.tags[--this.depth] = null;
+        }
+    }
+
+    /**
+     * @return true if the open elements end with the path
+     */
+    private boolean matches()
+    {
+        int count = this.steps.length;
+        if (this.isAbsolute ? this.depth != count : this.depth < count)
+        {
+            return false;
+        }
+
+        for (int i = 0; i < count; ++i)
+        {
+            String step = this.steps[count - 1 - i];
+            if (!step.equals("*") && !step.equals(this.tags[this.depth - 1 - i]))
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
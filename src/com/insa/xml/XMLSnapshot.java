@@ -0,0 +1,500 @@
+package com.insa.xml;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Save a tree of XMLNode in a compact binary form, and load it back without parsing any XML.
+ * Loading a snapshot only decodes the Strings and links the nodes, so it is much faster
+ * than parsing the document again.
+ * <p>
+ * The format is made of integers written as varints (7 bits per byte, the high bit set
+ * when a byte follows) and of Strings written as their UTF-8 length then their bytes:
+ * <ul>
+ * <li>the magic number "XMLS" on 4 bytes, then the version of the format</li>
+ * <li>the table of the names: the number of names, then the names. The tags and the
+ * attribute names are written as their position in the table</li>
+ * <li>the level of the saved node, then the number of top level nodes</li>
+ * <li>the nodes in document order: the tag, the flags (1 for a self closing node), the text,
+ * the number of attributes, the attributes as a name and a value, then the number of children</li>
+ * </ul>
+ * The nodes are linked to their parent and their siblings as they are read: the structure
+ * needs no matching of end tags. A loaded tree is not indexed, see XMLNode.buildTagIndex.
+ * @author Dorian Terbah
+ */
+public final class XMLSnapshot
+{
+    /**
+     * The version of the written format. A snapshot of a newer version can't be loaded.
+     */
+    public static final int VERSION = 1;
+
+    private static final int MAGIC = 0x584D4C53;
+    private static final int SELF_CLOSING = 1;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private XMLSnapshot()
+    {
+    }
+
+    /**
+     * Save a node and its descendants in a file, which is created or replaced.
+     * A node without parent is saved with its next siblings, as the top level nodes of a document.
+     * @param node The saved node.
+     * @param path The path of the file.
+     * @throws IOException If the file can't be written
+     */
+    public static void save(XMLNode node, Path path) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING))
+        {
+            save(node, channel);
+        }
+    }
+
+    /**
+     * Save a node and its descendants to a channel, which is not closed.
+     * A node without parent is saved with its next siblings, as the top level nodes of a document.
+     * @param node The saved node.
+     * @param channel The channel of the snapshot.
+     * @throws IOException If the channel fails
+     */
+    public static void save(XMLNode node, WritableByteChannel channel) throws IOException
+    {
+        List<XMLNode> nodes = new ArrayList<>();
+        nodes.add(node);
+        for (XMLNode sibling = node.next(); node.getParent() == null && sibling != null; sibling = sibling.next())
+        {
+            nodes.add(sibling);
+        }
+
+        new Output(channel).write(nodes);
+    }
+
+    /**
+     * Load the tree saved in a file. The file is mapped in memory.
+     * @param path The path of the file.
+     * @return The first top level node of the tree
+     * @throws IOException If the file can't be read
+     * @throws XMLParsingException If the file is not a snapshot, or a snapshot of a newer version
+     */
+    public static XMLNode load(Path path) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ))
+        {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE)
+            {
+                return load((ReadableByteChannel) channel);
+            }
+
+            return new Input(channel.map(FileChannel.MapMode.READ_ONLY, 0, size), null).read();
+        }
+    }
+
+    /**
+     * Load the tree saved to a channel, which is not closed.
+     * @param channel The channel of the snapshot.
+     * @return The first top level node of the tree
+     * @throws IOException If the channel fails
+     * @throws XMLParsingException If the data is not a snapshot, or a snapshot of a newer version
+     */
+    public static XMLNode load(ReadableByteChannel channel) throws IOException
+    {
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        buffer.flip();
+        return new Input(buffer, channel).read();
+    }
+
+    /**
+     * Write the snapshot through a buffer of fixed size.
+     */
+    private static final class Output
+    {
+        private final WritableByteChannel channel;
+        private final ByteBuffer buffer;
+        private final Map<String, Integer> names;
+
+        Output(WritableByteChannel channel)
+        {
+            this.channel = channel;
+            this.buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            this.names = new HashMap<>();
+        }
+
+        void write(List<XMLNode> nodes) throws IOException
+        {
+            List<String> table = new ArrayList<>();
+            ArrayDeque<XMLNode> stack = new ArrayDeque<>();
+            for (XMLNode node : nodes)
+            {
+                stack.push(node);
+                while (!stack.isEmpty())
+                {
+                    XMLNode current = stack.pop();
+                    this.addName(current.getTag(), table);
+                    AttributeList attributes = current.getAttributeList();
+                    for (int i = 0; attributes != null && i < attributes.size(); ++i)
+                    {
+                        this.addName(attributes.get(i).name, table);
+                    }
+
+                    for (XMLNode child : current.getChildren())
+                    {
+                        stack.push(child);
+                    }
+                }
+            }
+
+            this.buffer.putInt(MAGIC);
+            this.writeInt(VERSION);
+            this.writeInt(table.size());
+            for (String name : table)
+            {
+                this.writeString(name);
+            }
+
+            this.writeInt(nodes.get(0).level);
+            this.writeInt(nodes.size());
+            for (XMLNode node : nodes)
+            {
+                stack.push(node);
+                while (!stack.isEmpty())
+                {
+                    XMLNode current = stack.pop();
+                    this.writeNode(current);
+
+                    // the last child is pushed first, so the children are written in their order
+                    List<XMLNode> children = current.getChildren();
+                    for (int i = children.size() - 1; i >= 0; --i)
+                    {
+                        stack.push(children.get(i));
+                    }
+                }
+            }
+
+            this.flush();
+        }
+
+        private void addName(String name, List<String> table)
+        {
+            if (!this.names.containsKey(name))
+            {
+                this.names.put(name, table.size());
+                table.add(name);
+            }
+        }
+
+        private void writeNode(XMLNode node) throws IOException
+        {
+            this.writeInt(this.names.get(node.getTag()));
+            this.writeInt(node.isSelfClosing() ? SELF_CLOSING : 0);
+            this.writeString(node.getText());
+
+            AttributeList attributes = node.getAttributeList();
+            int count = attributes != null ? attributes.size() : 0;
+            this.writeInt(count);
+            for (int i = 0; i < count; ++i)
+            {
+                Attribute attribute = attributes.get(i);
+                this.writeInt(this.names.get(attribute.name));
+                this.writeString(attribute.value);
+            }
+
+            this.writeInt(node.getChildren().size());
+        }
+
+        private void writeInt(int value) throws IOException
+        {
+            if (this.buffer.remaining() < 5)
+            {
+                this.flush();
+            }
+
+            while ((value & ~0x7F) != 0)
+            {
+                this.buffer.put((byte) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+
+            this.buffer.put((byte) value);
+        }
+
+        private void writeString(String s) throws IOException
+        {
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            this.writeInt(bytes.length);
+            int offset = 0;
+            while (offset < bytes.length)
+            {
+                if (!this.buffer.hasRemaining())
+                {
+                    this.flush();
+                }
+
+                int count = Math.min(bytes.length - offset, this.buffer.remaining());
+                this.buffer.put(bytes, offset, count);
+                offset += count;
+            }
+        }
+
+        private void flush() throws IOException
+        {
+            this.buffer.flip();
+            while (this.buffer.hasRemaining())
+            {
+                this.channel.write(this.buffer);
+            }
+
+            this.buffer.clear();
+        }
+    }
+
+    /**
+     * Read the snapshot from a buffer, refilled from the channel if there is one.
+     */
+    private static final class Input
+    {
+        private ByteBuffer buffer;
+        private final ReadableByteChannel channel;
+        private byte[] bytes;
+        private String[] names;
+
+        Input(ByteBuffer buffer, ReadableByteChannel channel)
+        {
+            this.buffer = buffer;
+            this.channel = channel;
+            this.bytes = new byte[256];
+        }
+
+        XMLNode read() throws IOException
+        {
+            this.require(4);
+            if (this.buffer.getInt() != MAGIC)
+            {
+                throw new XMLParsingException("The data is not a XML snapshot");
+            }
+
+            int version = this.readInt();
+            if (version < 1 || version > VERSION)
+            {
+                throw new XMLParsingException("The version " + version + " of the snapshot is not supported");
+            }
+
+            // the table grows with the names read, so a corrupt count can't allocate more than the snapshot
+            int names = this.readLength();
+            this.names = new String[Math.min(names, 64)];
+            for (int i = 0; i < names; ++i)
+            {
+                if (i == this.names.length)
+                {
+                    this.names = Arrays.copyOf(this.names, Math.min(names, 2 * i));
+                }
+
+                this.names[i] = this.readString();
+            }
+
+            int level = this.readInt();
+            int count = this.readLength();
+            if (level < 0)
+            {
+                throw new XMLParsingException("The snapshot is malformed");
+            }
+
+            // the open nodes and the number of children they still expect
+            XMLNode[] nodes = new XMLNode[16];
+            int[] remaining = new int[16];
+            XMLNode root = null, last = null;
+            for (int i = 0; i < count; ++i)
+            {
+                XMLNode node = this.readNode(level);
+                if (root == null)
+                {
+                    root = node;
+                } else
+                {
+                    last.setNextSibling(node);
+                }
+
+                last = node;
+                int depth = 0;
+                nodes[0] = node;
+                remaining[0] = this.readLength();
+                while (depth >= 0)
+                {
+                    if (remaining[depth] == 0)
+                    {
+                        nodes[depth--] = null;
+                        continue;
+                    }
+
+                    --remaining[depth];
+                    XMLNode parent = nodes[depth];
+                    XMLNode child = this.readNode(parent.level + 1);
+                    parent.appendChild(child);
+                    if (++depth == nodes.length)
+                    {
+                        nodes = Arrays.copyOf(nodes, 2 * depth);
+                        remaining = Arrays.copyOf(remaining, 2 * depth);
+                    }
+
+                    nodes[depth] = child;
+                    remaining[depth] = this.readLength();
+                }
+            }
+
+            if (root == null)
+            {
+                throw new XMLParsingException("The document has no root element");
+            }
+
+            return root;
+        }
+
+        /**
+         * Read a node without its number of children.
+         */
+        private XMLNode readNode(int level) throws IOException
+        {
+            String tag = this.readName();
+            int flags = this.readInt();
+            XMLNode node = new XMLNode((flags & SELF_CLOSING) != 0, level);
+            node.setTag(tag);
+            node.setText(this.readString());
+            for (int i = this.readLength(); i > 0; --i)
+            {
+                String name = this.readName();
+                node.setAttribute(name, this.readString());
+            }
+
+            return node;
+        }
+
+        private String readName() throws IOException
+        {
+            int index = this.readInt();
+            if (index < 0 || index >= this.names.length)
+            {
+                throw new XMLParsingException("The snapshot is malformed");
+            }
+
+            return this.names[index];
+        }
+
+        private int readInt() throws IOException
+        {
+            int value = 0;
+            for (int shift = 0; shift < 35; shift += 7)
+            {
+                this.require(1);
+                int b = this.buffer.get();
+                value |= (b & 0x7F) << shift;
+                if (b >= 0)
+                {
+                    return value;
+                }
+            }
+
+            throw new XMLParsingException("The snapshot is malformed");
+        }
+
+        /**
+         * Read a length or a count. Every unit of it takes at least one byte of the snapshot,
+         * so it can't be negative nor bigger than the rest of a snapshot in memory.
+         */
+        private int readLength() throws IOException
+        {
+            int length = this.readInt();
+            if (length < 0)
+            {
+                throw new XMLParsingException("The snapshot is malformed");
+            }
+
+            if (this.channel == null && length > this.buffer.remaining())
+            {
+                throw new EOFException("The snapshot is truncated");
+            }
+
+            return length;
+        }
+
+        private String readString() throws IOException
+        {
+            int length = this.readLength();
+            if (length == 0)
+            {
+                return "";
+            }
+
+            this.require(length);
+            if (this.buffer.hasArray())
+            {
+                int offset = this.buffer.arrayOffset() + this.buffer.position();
+                this.buffer.position(this.buffer.position() + length);
+                return new String(this.buffer.array(), offset, length, StandardCharsets.UTF_8);
+            }
+
+            if (this.bytes.length < length)
+            {
+                this.bytes = new byte[Math.max(length, 2 * this.bytes.length)];
+            }
+
+            this.buffer.get(this.bytes, 0, length);
+            return new String(this.bytes, 0, length, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Make sure the buffer holds some bytes, the buffer is refilled and grown if needed.
+         * The buffer grows with the bytes read, so a corrupt length fails at the end of the
+         * channel instead of allocating its whole size.
+         */
+        private void require(int count) throws IOException
+        {
+            if (count < 0)
+            {
+                throw new XMLParsingException("The snapshot is malformed");
+            }
+
+            if (this.buffer.remaining() >= count)
+            {
+                return;
+            }
+
+            if (this.channel == null)
+            {
+                throw new EOFException("The snapshot is truncated");
+            }
+
+            this.buffer.compact();
+            while (this.buffer.position() < count)
+            {
+                if (!this.buffer.hasRemaining())
+                {
+                    this.buffer.flip();
+                    this.buffer = ByteBuffer.allocate((int) Math.min(count, 2L * this.buffer.capacity())).put(this.buffer);
+                }
+
+                if (this.channel.read(this.buffer) < 0)
+                {
+                    throw new EOFException("The snapshot is truncated");
+                }
+            }
+
+            this.buffer.flip();
+        }
+    }
+}
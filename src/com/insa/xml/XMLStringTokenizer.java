@@ -0,0 +1,62 @@
+package com.insa.xml;
+
+/**
+ * Tokenizer over a String: the whole document is the window.
+ * @author Dorian Terbah
+ */
+final class XMLStringTokenizer extends XMLTokenizer
+{
+    private String xml;
+    
+    XMLStringTokenizer()
+    {
+        this.xml = "";
+    }
+    
+    /**
+     * Put the cursor at the beginning of a new document.
+     * @param xml The new document
+     */
+    void reset(String xml)
+    {
+        this.reset(xml, 0, xml.length());
+    }
+    
+    /**
+     * Put the cursor at the beginning of a part of a new document.
+     * The positions of the tokens are the positions in the whole document.
+     * @param xml The new document
+     * @param start The position of the first char of the part
+     * @param end The end of the part
+     */
+    void reset(String xml, int start, int end)
+    {
+        this.xml = xml;
+        this.reset(start, end);
+    }
+    
+    @Override
+    int charAt(int index)
+    {
+        return this.xml.charAt(index);
+    }
+    
+    @Override
+    int indexOf(char c)
+    {
+        int index = this.xml.indexOf(c, this.cursor);
+        return index < this.limit ? index : -1;
+    }
+    
+    @Override
+    int read()
+    {
+        return -1;
+    }
+    
+    @Override
+    String decode(int start, int end)
+    {
+        return this.xml.substring(start, end);
+    }
+}
@@ -0,0 +1,763 @@
+package com.insa.xml;
+
+/**
+ * Walk through a XML document with an integer cursor.
+ * The tokens are kept as offset ranges into the window of the source held by
+ * the subclass, the Strings are only created when they are asked.
+ * When the window is refilled, the data before the start of the current token
+ * can be discarded: a token is never cut by the end of the window.
+ * @author Dorian Terbah
+ */
+abstract class XMLTokenizer
+{
+    static final int END_OF_INPUT = -1;
+    static final int START_TAG = 1;
+    static final int END_TAG = 2;
+    static final int TEXT = 3;
+    static final int COMMENT = 4;
+
+    private static final char RIGHT_CHEVRON = '>';
+    private static final char LEFT_CHEVRON = '<';
+    private static final char SLASH = '/';
+    private static final char EQUAL = '=';
+    private static final char DELIMITER_SIMPLE_QUOTE = '\'';
+    private static final char DELIMITER_DOUBLE_QUOTE = '"';
+
+    private static final String COMMENT_BEGIN = "<!--";
+    private static final String COMMENT_END = "-->";
+    private static final String CDATA_BEGIN = "<![CDATA[";
+    private static final String CDATA_END = "]]>";
+    private static final String INSTRUCTION_END = "?>";
+
+    // the window of the source is [0, limit), the current token begins at mark
+    int cursor;
+    int limit;
+    int mark;
+
+    // the number of units discarded before the window
+    private long discarded;
+
+    // ranges of the current token
+    private int nameStart, nameEnd;
+    private int textStart, textEnd;
+    private int[] attributes;
+    private int attributeCount;
+    private boolean isSelfClosing;
+    private boolean pendingEndTag;
+    private final XMLAttributes attributeView;
+    private SymbolCache symbols;
+
+    XMLTokenizer()
+    {
+        this.attributes = new int[16];
+        this.attributeView = new AttributeView();
+        this.symbols = null;
+        this.reset(0, 0);
+    }
+
+    /**
+     * Set the cache used to create the names and the values.
+     * @param symbols The cache, <code>null</code> to create a new String every time
+     */
+    void setSymbols(SymbolCache symbols)
+    {
+        this.symbols = symbols;
+    }
+
+    /**
+     * Put the cursor at the beginning of a new window.
+     * The buffers of the previous document are kept.
+     * @param start The first index of the window
+     * @param end The end of the data available in the window
+     */
+    void reset(int start, int end)
+    {
+        this.cursor = start;
+        this.limit = end;
+        this.mark = start;
+        this.discarded = 0;
+        this.attributeCount = 0;
+        this.isSelfClosing = false;
+        this.pendingEndTag = false;
+    }
+
+    /**
+     * Get a char of the window.
+     * @param index The index in the window, lower than <code>limit</code>
+     * @return The char
+     */
+    abstract int charAt(int index);
+
+    /**
+     * Find a char in the window, from the cursor to the limit.
+     * @param c The char to find
+     * @return The index of the char, or -1 if it is not in the window
+     */
+    abstract int indexOf(char c);
+
+    /**
+     * Read more data at the end of the window. The data from <code>mark</code>
+     * must be kept; when the window is compacted, {@link #discard(int)} must be called.
+     * @return The number of chars read, or -1 at the end of the source
+     */
+    abstract int read();
+
+    /**
+     * @return true if the window holds the bytes of an encoded source rather than chars
+     */
+    boolean hasByteUnits()
+    {
+        return false;
+    }
+
+    /**
+     * Create the String of a range of the window.
+     * @param start The first index
+     * @param end The end of the range
+     * @return The String
+     */
+    abstract String decode(int start, int end);
+
+    /**
+     * Shift the ranges after the first chars of the window were discarded.
+     * @param count The number of discarded chars
+     */
+    final void discard(int count)
+    {
+        this.discarded += count;
+        this.cursor -= count;
+        this.limit -= count;
+        this.mark -= count;
+        this.nameStart -= count;
+        this.nameEnd -= count;
+        this.textStart -= count;
+        this.textEnd -= count;
+        for (int i = 0; i < this.attributes.length; ++i)
+        {
+            this.attributes[i] -= count;
+        }
+    }
+
+    /**
+     * Get the position of the cursor in the source, in the units of the window: chars or bytes.
+     * @return The number of units before the cursor
+     */
+    long getOffset()
+    {
+        return this.discarded + this.cursor;
+    }
+
+    /**
+     * Move the cursor to the next token.
+     * A self closing tag is followed by its own end tag.
+     * @return The type of the token, or <code>END_OF_INPUT</code>
+     */
+    int next()
+    {
+        if (this.pendingEndTag)
+        {
+            this.pendingEndTag = false;
+            return END_TAG;
+        }
+
+        this.isSelfClosing = false;
+        while (true)
+        {
+            this.mark = this.cursor;
+            int c = this.peek(0);
+            if (c == -1)
+            {
+                return END_OF_INPUT;
+            }
+
+            if (c != LEFT_CHEVRON)
+            {
+                if (this.readText())
+                {
+                    return TEXT;
+                }
+
+                continue;
+            }
+
+            c = this.peek(1);
+            if (c == -1)
+            {
+                throw new XMLParsingException("Tag malformed");
+            }
+
+            if (c == SLASH)
+            {
+                this.readEndTag();
+                return END_TAG;
+            } else if (c == '!')
+            {
+                if (this.startsWith(COMMENT_BEGIN))
+                {
+                    this.cursor += COMMENT_BEGIN.length();
+                    this.textStart = this.cursor;
+                    this.skipTo(COMMENT_END, "Comment malformed");
+                    return COMMENT;
+                }
+
+                if (this.startsWith(CDATA_BEGIN))
+                {
+                    this.cursor += CDATA_BEGIN.length();
+                    this.textStart = this.cursor;
+                    this.skipTo(CDATA_END, "CDATA section malformed");
+                    return TEXT;
+                }
+
+                // for the moment, don't take the declarations
+                this.skipDeclaration();
+            } else if (c == '?')
+            {
+                // for the moment, don't take the processing instructions
+                this.cursor += 2;
+                this.skipTo(INSTRUCTION_END, "Processing instruction malformed");
+            } else
+            {
+                this.readStartTag();
+                return START_TAG;
+            }
+        }
+    }
+
+    /**
+     * Skip the content of the current start tag up to its end tag, by counting
+     * the depth only: no name, attribute or text is read.
+     * The end tag becomes the current token.
+     */
+    void skipElement()
+    {
+        if (this.pendingEndTag)
+        {
+            // a self closing tag has no content
+            this.pendingEndTag = false;
+            return;
+        }
+
+        int depth = 1;
+        while (true)
+        {
+            if (!this.skipTo(LEFT_CHEVRON))
+            {
+                throw new XMLParsingException("Tag not closed");
+            }
+
+            this.mark = this.cursor;
+            int c = this.peek(1);
+            if (c == SLASH)
+            {
+                if (--depth == 0)
+                {
+                    this.readEndTag();
+                    return;
+                }
+
+                if (!this.scanTo(RIGHT_CHEVRON))
+                {
+                    throw new XMLParsingException("Tag malformed");
+                }
+
+                ++this.cursor;
+            } else if (c == '!')
+            {
+                if (this.startsWith(COMMENT_BEGIN))
+                {
+                    this.cursor += COMMENT_BEGIN.length();
+                    this.skipTo(COMMENT_END, "Comment malformed");
+                } else if (this.startsWith(CDATA_BEGIN))
+                {
+                    this.cursor += CDATA_BEGIN.length();
+                    this.skipTo(CDATA_END, "CDATA section malformed");
+                } else
+                {
+                    this.skipDeclaration();
+                }
+            } else if (c == '?')
+            {
+                this.cursor += 2;
+                this.skipTo(INSTRUCTION_END, "Processing instruction malformed");
+            } else if (!this.skipStartTag())
+            {
+                ++depth;
+            }
+        }
+    }
+
+    /**
+     * Get the tag name of the current start or end tag.
+     * @return The tag name
+     */
+    String getName()
+    {
+        return this.symbol(this.nameStart, this.nameEnd);
+    }
+
+    /**
+     * Get the tag name of the current end tag, without creating a new String
+     * when it is the name of the open element.
+     * @param expected The tag name of the open element
+     * @return The tag name
+     */
+    String getName(String expected)
+    {
+        return this.matches(this.nameStart, this.nameEnd, expected) ? expected : this.getName();
+    }
+
+    /**
+     * Get the text of the current text or comment token.
+     * The line feeds are not kept.
+     * @return The text
+     */
+    String getText()
+    {
+        String text = this.value(this.textStart, this.textEnd);
+        return text.indexOf('\n') == -1 ? text : text.replace("\n", "");
+    }
+
+    /**
+     * @return The number of attributes of the current start tag
+     */
+    int getAttributeCount()
+    {
+        return this.attributeCount;
+    }
+
+    /**
+     * Get the name of an attribute of the current start tag.
+     * @param index The index of the attribute
+     * @return The name of the attribute
+     */
+    String getAttributeName(int index)
+    {
+        return this.symbol(this.attributes[4 * index], this.attributes[4 * index + 1]);
+    }
+
+    /**
+     * Get the value of an attribute of the current start tag.
+     * @param index The index of the attribute
+     * @return The value of the attribute
+     */
+    String getAttributeValue(int index)
+    {
+        return this.value(this.attributes[4 * index + 2], this.attributes[4 * index + 3]);
+    }
+
+    /**
+     * Get a view of the attributes of the current start tag.
+     * The view reads the current tag, it is not valid after the next token.
+     * @return The attributes
+     */
+    XMLAttributes getAttributes()
+    {
+        return this.attributeView;
+    }
+
+    /**
+     * @return true if the current tag is self closing, else false
+     */
+    boolean isSelfClosing()
+    {
+        return this.isSelfClosing;
+    }
+
+    /**
+     * Compare a range of the window to a String, without decoding the range.
+     * @param start The first index of the range
+     * @param end The end of the range
+     * @param value The String
+     * @return true if the range holds the String
+     */
+    boolean matches(int start, int end, String value)
+    {
+        int length = value.length();
+        if (end - start == length)
+        {
+            // the units of a byte source are the chars of the String only below 0x80
+            int units = this.hasByteUnits() ? 0x80 : Character.MAX_VALUE + 1;
+            int i = 0;
+            while (i < length && value.charAt(i) < units && this.charAt(start + i) == value.charAt(i))
+            {
+                ++i;
+            }
+
+            if (i == length)
+            {
+                return true;
+            }
+        }
+
+        // a non ASCII String can have another length in the source
+        for (int i = 0; i < length; ++i)
+        {
+            if (value.charAt(i) >= 0x80)
+            {
+                return this.decode(start, end).equals(value);
+            }
+        }
+
+        return false;
+    }
+
+    private String symbol(int start, int end)
+    {
+        return this.symbols != null ? this.symbols.symbol(this, start, end) : this.decode(start, end);
+    }
+
+    private String value(int start, int end)
+    {
+        return this.symbols != null ? this.symbols.value(this, start, end) : this.decode(start, end);
+    }
+
+    private static boolean isWhitespace(int c)
+    {
+        return c <= ' ';
+    }
+
+    private static boolean isNameEnd(int c)
+    {
+        return c <= ' ' || c == RIGHT_CHEVRON || c == SLASH || c == EQUAL;
+    }
+
+    /**
+     * Get a char after the cursor, the window is refilled if needed.
+     * @param offset The offset from the cursor
+     * @return The char, or -1 at the end of the source
+     */
+    private int peek(int offset)
+    {
+        while (this.cursor + offset >= this.limit)
+        {
+            if (this.read() < 0)
+            {
+                return -1;
+            }
+        }
+
+        return this.charAt(this.cursor + offset);
+    }
+
+    /**
+     * Move the cursor to the next occurence of a char.
+     * @param c The char
+     * @return false if the end of the source is reached before the char
+     */
+    private boolean scanTo(char c)
+    {
+        while (true)
+        {
+            int index = this.indexOf(c);
+            if (index != -1)
+            {
+                this.cursor = index;
+                return true;
+            }
+
+            this.cursor = this.limit;
+            if (this.read() < 0)
+            {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Move the cursor to the next occurence of a char, the chars before it
+     * are discarded at the next refill.
+     * @param c The char
+     * @return false if the end of the source is reached before the char
+     */
+    private boolean skipTo(char c)
+    {
+        while (true)
+        {
+            int index = this.indexOf(c);
+            if (index != -1)
+            {
+                this.cursor = index;
+                return true;
+            }
+
+            this.cursor = this.limit;
+            this.mark = this.cursor;
+            if (this.read() < 0)
+            {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Move the cursor after a start tag. The values of the attributes can hold some chevrons.
+     * @return true if the tag is self closing
+     */
+    private boolean skipStartTag()
+    {
+        int c, previous = 0;
+        ++this.cursor;
+        while ((c = this.peek(0)) != RIGHT_CHEVRON)
+        {
+            if (c == -1)
+            {
+                throw new XMLParsingException("Tag malformed");
+            }
+
+            if (c == DELIMITER_DOUBLE_QUOTE || c == DELIMITER_SIMPLE_QUOTE)
+            {
+                ++this.cursor;
+                if (!this.scanTo((char) c))
+                {
+                    throw new XMLParsingException("The attributes values must end by a quote");
+                }
+            }
+
+            previous = c;
+            ++this.cursor;
+        }
+
+        ++this.cursor;
+        return previous == SLASH;
+    }
+
+    private boolean startsWith(String prefix)
+    {
+        for (int i = 0; i < prefix.length(); ++i)
+        {
+            if (this.peek(i) != prefix.charAt(i))
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private boolean readText()
+    {
+        // the leading whitespaces are not kept
+        int c;
+        while ((c = this.peek(0)) != -1 && isWhitespace(c))
+        {
+            this.mark = ++this.cursor;
+        }
+
+        if (c == -1 || c == LEFT_CHEVRON)
+        {
+            return false;
+        }
+
+        this.textStart = this.cursor;
+        this.scanTo(LEFT_CHEVRON);
+        this.textEnd = this.cursor;
+        return true;
+    }
+
+    private void readEndTag()
+    {
+        this.cursor += 2;
+        this.nameStart = this.cursor;
+        this.readName();
+        this.nameEnd = this.cursor;
+
+        if (!this.scanTo(RIGHT_CHEVRON))
+        {
+            throw new XMLParsingException("Tag malformed");
+        }
+
+        ++this.cursor;
+    }
+
+    private void readStartTag()
+    {
+        this.attributeCount = 0;
+        this.nameStart = ++this.cursor;
+        this.readName();
+        this.nameEnd = this.cursor;
+        if (this.nameStart == this.nameEnd)
+        {
+            throw new XMLParsingException("Tag malformed");
+        }
+
+        while (true)
+        {
+            this.skipWhitespaces();
+            int c = this.peek(0);
+            if (c == RIGHT_CHEVRON)
+            {
+                ++this.cursor;
+                return;
+            }
+
+            if (c == SLASH)
+            {
+                if (this.peek(1) != RIGHT_CHEVRON)
+                {
+                    throw new XMLParsingException("Tag malformed");
+                }
+
+                // orphan node
+                this.cursor += 2;
+                this.isSelfClosing = true;
+                this.pendingEndTag = true;
+                return;
+            }
+
+            this.readAttribute();
+        }
+    }
+
+    private void readAttribute()
+    {
+        if (4 * this.attributeCount == this.attributes.length)
+        {
+            int[] attributes = new int[2 * this.attributes.length];
+            System.arraycopy(this.attributes, 0, attributes, 0, this.attributes.length);
+            this.attributes = attributes;
+        }
+
+        int offset = 4 * this.attributeCount;
+        this.attributes[offset] = this.cursor;
+        this.readName();
+        if (this.attributes[offset] == this.cursor)
+        {
+            throw new XMLParsingException("Tag malformed");
+        }
+
+        this.attributes[offset + 1] = this.cursor;
+
+        this.skipWhitespaces();
+        if (this.peek(0) != EQUAL)
+        {
+            throw new XMLParsingException("The attributes must have a value");
+        }
+
+        ++this.cursor;
+        this.skipWhitespaces();
+
+        int delimiter = this.peek(0);
+        if (delimiter != DELIMITER_DOUBLE_QUOTE && delimiter != DELIMITER_SIMPLE_QUOTE)
+        {
+            throw new XMLParsingException("The attributes values must begin by a quote");
+        }
+
+        // pass throught the first delimiter
+        this.attributes[offset + 2] = ++this.cursor;
+        if (!this.scanTo((char) delimiter))
+        {
+            throw new XMLParsingException("The attributes values must end by a quote");
+        }
+
+        this.attributes[offset + 3] = this.cursor++;
+        ++this.attributeCount;
+    }
+
+    private void readName()
+    {
+        int c;
+        while ((c = this.peek(0)) != -1 && !isNameEnd(c))
+        {
+            ++this.cursor;
+        }
+    }
+
+    private void skipWhitespaces()
+    {
+        int c;
+        while ((c = this.peek(0)) != -1 && isWhitespace(c))
+        {
+            ++this.cursor;
+        }
+
+        if (c == -1)
+        {
+            throw new XMLParsingException("Tag malformed");
+        }
+    }
+
+    /**
+     * Move the cursor after a delimiter, the text of the token ends before it.
+     * @param delimiter The delimiter
+     * @param error The message if the delimiter is not found
+     */
+    private void skipTo(String delimiter, String error)
+    {
+        while (true)
+        {
+            if (!this.scanTo(delimiter.charAt(0)))
+            {
+                throw new XMLParsingException(error);
+            }
+
+            if (this.startsWith(delimiter))
+            {
+                this.textEnd = this.cursor;
+                this.cursor += delimiter.length();
+                return;
+            }
+
+            ++this.cursor;
+        }
+    }
+
+    private void skipDeclaration()
+    {
+        // the internal subset of a DOCTYPE can contain some chevrons
+        int depth = 0;
+        int c;
+        this.cursor += 2;
+        while ((c = this.peek(0)) != -1)
+        {
+            ++this.cursor;
+            if (c == '[')
+            {
+                ++depth;
+            } else if (c == ']')
+            {
+                --depth;
+            } else if (c == RIGHT_CHEVRON && depth <= 0)
+            {
+                return;
+            }
+        }
+
+        throw new XMLParsingException("Declaration malformed");
+    }
+
+    private class AttributeView implements XMLAttributes
+    {
+        @Override
+        public int getLength()
+        {
+            return XMLTokenizer.this.attributeCount;
+        }
+
+        @Override
+        public String getName(int index)
+        {
+            return XMLTokenizer.this.getAttributeName(index);
+        }
+
+        @Override
+        public String getValue(int index)
+        {
+            return XMLTokenizer.this.getAttributeValue(index);
+        }
+
+        @Override
+        public String getValue(String name)
+        {
+            int[] attributes = XMLTokenizer.this.attributes;
+            for (int i = 0; i < XMLTokenizer.this.attributeCount; ++i)
+            {
+                if (XMLTokenizer.this.matches(attributes[4 * i], attributes[4 * i + 1], name))
+                {
+                    return XMLTokenizer.this.getAttributeValue(i);
+                }
+            }
+
+            return null;
+        }
+    }
+}
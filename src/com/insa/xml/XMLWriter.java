@@ -0,0 +1,295 @@
+package com.insa.xml;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.util.List;
+
+/**
+ * Write trees of XMLNode to an output, as XMLNode.toString does, without building the document in memory:
+ * the chars go through one buffer of fixed size, and the tree is walked without recursion.
+ * The buffer is sent to the output when it is full and by flush, so the output starts
+ * to receive the document right away.
+ * @author Dorian Terbah
+ */
+public class XMLWriter implements Flushable, Closeable
+{
+    private static final int BUFFER_SIZE = 8192;
+
+    private final Appendable output;
+
+    // a StringBuilder receives the chars directly, it is already a buffer
+    private final StringBuilder builder;
+    private final char[] buffer;
+    private int count;
+
+    private int tabulation;
+
+    // the open elements and the position of their next child
+    private XMLNode[] nodes;
+    private int[] positions;
+
+    /**
+     * Create a writer to an Appendable: a Writer, a StringBuilder...
+     * @param output The output of the writer.
+     */
+    public XMLWriter(Appendable output)
+    {
+        this.output = output;
+        this.builder = output instanceof StringBuilder ? (StringBuilder) output : null;
+        this.buffer = this.builder == null ? new char[BUFFER_SIZE] : null;
+        this.count = 0;
+        this.tabulation = 0;
+        this.nodes = new XMLNode[16];
+        this.positions = new int[16];
+    }
+
+    /**
+     * Create a writer to a stream.
+     * @param output The stream.
+     * @param charset The charset of the written document.
+     */
+    public XMLWriter(OutputStream output, Charset charset)
+    {
+        this(new OutputStreamWriter(output, charset));
+    }
+
+    /**
+     * Set the tabulation of the written nodes: when it is positive, every child is written
+     * on a new line, indented by tabulation spaces per level.
+     * @param tabulation The number of spaces per level.
+     */
+    public void setTabulation(int tabulation)
+    {
+        this.tabulation = tabulation;
+    }
+
+    /**
+     * Get the tabulation of the written nodes.
+     * @return The number of spaces per level
+     */
+    public int getTabulation()
+    {
+        return this.tabulation;
+    }
+
+    /**
+     * Write a node and its descendants.
+     * The chars can stay in the buffer until the next call of flush.
+     * @param node The written node.
+     * @throws IOException If the output fails
+     */
+    public void write(XMLNode node) throws IOException
+    {
+        if (!this.writeStart(node))
+        {
+            return;
+        }
+
+        int depth = 0;
+        this.nodes[0] = node;
+        this.positions[0] = 0;
+        while (depth >= 0)
+        {
+            XMLNode parent = this.nodes[depth];
+            List<XMLNode> children = parent.getChildren();
+            if (this.positions[depth] < children.size())
+            {
+                XMLNode child = children.get(this.positions[depth]++);
+                if (this.tabulation > 0)
+                {
+                    this.write('\n');
+                }
+
+                if (this.writeStart(child))
+                {
+                    this.push(++depth, child);
+                }
+            } else
+            {
+                this.writeEnd(parent);
+                this.nodes[depth--] = null;
+            }
+        }
+    }
+
+    /**
+     * Send the buffer to the output, and flush the output.
+     * @throws IOException If the output fails
+     */
+    @Override
+    public void flush() throws IOException
+    {
+        this.flushBuffer();
+        if (this.output instanceof Flushable)
+        {
+            ((Flushable) this.output).flush();
+        }
+    }
+
+    /**
+     * Flush the writer and close its output.
+     * @throws IOException If the output fails
+     */
+    @Override
+    public void close() throws IOException
+    {
+        this.flush();
+        if (this.output instanceof Closeable)
+        {
+            ((Closeable) this.output).close();
+        }
+    }
+
+    private void push(int depth, XMLNode node)
+    {
+        if (depth == this.nodes.length)
+        {
+            XMLNode[] nodes = new XMLNode[2 * depth];
+            System.arraycopy(this.nodes, 0, nodes, 0, depth);
+            this.nodes = nodes;
+
+            int[] positions = new int[2 * depth];
+            System.arraycopy(this.positions, 0, positions, 0, depth);
+            this.positions = positions;
+        }
+
+        this.nodes[depth] = node;
+        this.positions[depth] = 0;
+    }
+
+    /**
+     * Write the start tag and the text of a node.
+     * @return true if the node has an end tag
+     */
+    private boolean writeStart(XMLNode node) throws IOException
+    {
+        this.indent(node);
+        this.write('<');
+        this.write(node.getTag());
+
+        AttributeList attributes = node.getAttributeList();
+        for (int i = 0; attributes != null && i < attributes.size(); ++i)
+        {
+            Attribute attribute = attributes.get(i);
+            this.write(' ');
+            this.write(attribute.name);
+            this.write('=');
+            this.writeValue(attribute.value);
+        }
+
+        if (node.isSelfClosing())
+        {
+            this.write("/>\n");
+            return false;
+        }
+
+        this.write('>');
+        this.write(node.getText());
+        return true;
+    }
+
+    private void writeEnd(XMLNode node) throws IOException
+    {
+        if (!node.getChildren().isEmpty())
+        {
+            this.write('\n');
+            this.indent(node);
+        }
+
+        this.write("</");
+        this.write(node.getTag());
+        this.write('>');
+    }
+
+    /**
+     * Write a value between quotes which are not in the value.
+     * The values are written as they have been read, without entities, so the
+     * double quotes are only replaced when the value has both kinds of quotes.
+     */
+    private void writeValue(String value) throws IOException
+    {
+        boolean hasDoubleQuote = value.indexOf('"') >= 0;
+        if (hasDoubleQuote && value.indexOf('\'') < 0)
+        {
+            this.write('\'');
+            this.write(value);
+            this.write('\'');
+            return;
+        }
+
+        this.write('"');
+        this.write(hasDoubleQuote ? value.replace("\"", "&quot;") : value);
+        this.write('"');
+    }
+
+    private void indent(XMLNode node) throws IOException
+    {
+        for (int i = this.tabulation * node.level; i > 0; --i)
+        {
+            this.write(' ');
+        }
+    }
+
+    private void write(char c) throws IOException
+    {
+        if (this.builder != null)
+        {
+            this.builder.append(c);
+            return;
+        }
+
+        if (this.count == this.buffer.length)
+        {
+            this.flushBuffer();
+        }
+
+        this.buffer[this.count++] = c;
+    }
+
+    private void write(String s) throws IOException
+    {
+        if (this.builder != null)
+        {
+            this.builder.append(s);
+            return;
+        }
+
+        int start = 0;
+        while (start < s.length())
+        {
+            if (this.count == this.buffer.length)
+            {
+                this.flushBuffer();
+            }
+
+            int end = Math.min(s.length(), start + this.buffer.length - this.count);
+            s.getChars(start, end, this.buffer, this.count);
+            this.count += end - start;
+            start = end;
+        }
+    }
+
+    private void flushBuffer() throws IOException
+    {
+        if (this.count == 0)
+        {
+            return;
+        }
+
+        if (this.output instanceof Writer)
+        {
+            ((Writer) this.output).write(this.buffer, 0, this.count);
+        } else
+        {
+            this.output.append(CharBuffer.wrap(this.buffer, 0, this.count));
+        }
+
+        this.count = 0;
+    }
+}
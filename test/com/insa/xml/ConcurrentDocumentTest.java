@@ -0,0 +1,246 @@
+package com.insa.xml;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+/**
+ * The lookups of a document shared by threads, while other threads change it.
+ * @author Dorian Terbah
+ */
+public class ConcurrentDocumentTest
+{
+    // the number of items of a generation
+    private static final int ITEMS = 40;
+
+    private static final Pattern GENERATION = Pattern.compile("gen=\"(\\d+)\"");
+
+    private static XMLNode item(int generation, int index)
+    {
+        XMLNode item = new XMLNode(true, 0);
+        item.setTag("item");
+        item.setAttribute("id", "g" + generation + "-" + index);
+        item.setAttribute("gen", Integer.toString(generation));
+        return item;
+    }
+
+    private static ConcurrentDocument document()
+    {
+        StringBuilder xml = new StringBuilder("<root><list id=\"list\" gen=\"0\">");
+        for (int i = 0; i < ITEMS; ++i)
+        {
+            xml.append("<item id=\"g0-").append(i).append("\" gen=\"0\"/>");
+        }
+
+        xml.append("</list><other id=\"other\">text</other></root>");
+        return new ConcurrentDocument(XMLParser.getInstance().parse(xml.toString()));
+    }
+
+    /**
+     * Replace all the items, and the generation of the list, in one change.
+     */
+    private static void replaceItems(ConcurrentDocument document, XMLNode list, int generation)
+    {
+        document.write(root -> {
+            list.removeChildrenByTag("item");
+            for (int i = 0; i < ITEMS; ++i)
+            {
+                list.appendChild(item(generation, i));
+            }
+
+            list.setAttribute("gen", Integer.toString(generation));
+        });
+    }
+
+    /**
+     * Check that nodes are all of one generation, and return it.
+     */
+    private static String generation(ConcurrentDocument document, List<XMLNode> nodes, int size)
+    {
+        assertEquals(size, nodes.size());
+        Set<String> generations = new HashSet<>();
+        for (XMLNode node : nodes)
+        {
+            generations.add(document.getAttribute(node, "gen"));
+        }
+
+        assertEquals(generations.toString(), 1, generations.size());
+        return generations.iterator().next();
+    }
+
+    @Test
+    public void theLookupsSeeTheLastChange()
+    {
+        ConcurrentDocument document = document();
+        XMLNode list = document.getElementById("list");
+        assertEquals("0", generation(document, document.getElementsByTag("item"), ITEMS));
+
+        replaceItems(document, list, 1);
+        assertEquals("1", generation(document, document.getElementsByTag("item"), ITEMS));
+        assertEquals("1", generation(document, document.getChildren(list), ITEMS));
+        assertEquals("1", generation(document, document.getElementsByAttribute("gen"), ITEMS + 1));
+        assertEquals(ITEMS, document.getElementsByAttribute("gen", "1").size() - 1);
+        assertNull(document.getElementById("g0-0"));
+        assertEquals("g1-3", document.getAttribute(document.getElementById("g1-3"), "id"));
+
+        document.setText(document.getElementById("other"), "changed");
+        assertTrue(document.toString().contains(">changed<"));
+        assertEquals("changed", document.getText(document.getElementById("other")));
+    }
+
+    @Test
+    public void theChildrenOfARemovedNodeAreReadUnderTheLock()
+    {
+        ConcurrentDocument document = document();
+        XMLNode list = document.getElementById("list");
+        XMLNode root = list.getParent();
+        List<XMLNode> removed = document.removeChildrenByTag(root, "list");
+        assertEquals(1, removed.size());
+        assertSame(list, removed.get(0));
+
+        // the removed node is not in the snapshot, its children are read from the node
+        assertEquals(ITEMS, document.getChildren(list).size());
+        assertTrue(document.getElementsByTag("item").isEmpty());
+        assertEquals(1, document.getChildren(root).size());
+    }
+
+    @Test(timeout = 10000)
+    public void aLookupDuringAChangeWaitsForItsEnd() throws Exception
+    {
+        ConcurrentDocument document = document();
+        XMLNode list = document.getElementById("list");
+        document.getElementsByTag("item");
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try
+        {
+            CountDownLatch started = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+            Future<?> change = executor.submit(() -> document.write(root -> {
+                list.removeChildrenByTag("item");
+                started.countDown();
+                try
+                {
+                    release.await();
+                } catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                }
+
+                list.appendChild(item(1, 0));
+            }));
+
+            // the change holds the write lock: the optimistic lookup fails and waits for the read lock
+            started.await();
+            Future<List<XMLNode>> lookup = executor.submit(() -> document.getElementsByTag("item"));
+            try
+            {
+                lookup.get(200, TimeUnit.MILLISECONDS);
+                throw new AssertionError("The lookup did not wait for the change");
+            } catch (TimeoutException e)
+            {
+                // the lookup waits
+            }
+
+            release.countDown();
+            change.get();
+            List<XMLNode> items = lookup.get();
+            assertEquals(1, items.size());
+            assertEquals("g1-0", document.getAttribute(items.get(0), "id"));
+        } finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void theLookupsNeverSeeAHalfChangedTree() throws Exception
+    {
+        ConcurrentDocument document = document();
+        XMLNode list = document.getElementById("list");
+        int generations = 300;
+
+        ExecutorService executor = Executors.newFixedThreadPool(5);
+        try
+        {
+            AtomicBoolean done = new AtomicBoolean(false);
+            List<Future<Integer>> readers = new ArrayList<>();
+            for (int i = 0; i < 4; ++i)
+            {
+                readers.add(executor.submit(() -> {
+                    int lookups = 0;
+                    int last = 0;
+                    while (!done.get())
+                    {
+                        int current = Integer.parseInt(generation(document, document.getElementsByTag("item"), ITEMS));
+                        generation(document, document.getChildren(list), ITEMS);
+
+                        // the attribute of the list is changed in place, the items never are
+                        List<XMLNode> nodes = document.getElementsByAttribute("gen");
+                        assertTrue(nodes.remove(list));
+                        generation(document, nodes, ITEMS);
+
+                        // a later change can replace the generation, but never a part of it
+                        int size = document.getElementsByAttribute("gen", Integer.toString(current)).size();
+                        assertTrue(Integer.toString(size), size == 0 || size == ITEMS + 1);
+
+                        // a lookup never goes back to an older generation
+                        assertTrue(current >= last);
+                        last = current;
+
+                        Set<String> written = new HashSet<>();
+                        Matcher matcher = GENERATION.matcher(document.toString());
+                        int count = 0;
+                        while (matcher.find())
+                        {
+                            written.add(matcher.group(1));
+                            ++count;
+                        }
+
+                        assertEquals(ITEMS + 1, count);
+                        assertEquals(written.toString(), 1, written.size());
+                        lookups += 5;
+                    }
+
+                    return lookups;
+                }));
+            }
+
+            // the readers never hold the changes back
+            for (int generation = 1; generation <= generations; ++generation)
+            {
+                replaceItems(document, list, generation);
+                Thread.yield();
+            }
+
+            done.set(true);
+            for (Future<Integer> reader : readers)
+            {
+                assertTrue(reader.get() > 0);
+            }
+
+            assertEquals(Integer.toString(generations),
+                    generation(document, document.getElementsByTag("item"), ITEMS));
+        } finally
+        {
+            executor.shutdownNow();
+        }
+    }
+}
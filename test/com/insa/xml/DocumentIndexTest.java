@@ -0,0 +1,317 @@
+package com.insa.xml;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+/**
+ * The index of a document kept up to date by the changes of the tree, compared to
+ * the walks of a copy of the tree which is not indexed.
+ * @author Dorian Terbah
+ */
+public class DocumentIndexTest
+{
+    private static final String[] TAGS = { "root", "a", "b", "c", "d" };
+
+    private static final String XML = "<root id=\"0\">"
+            + "<a id=\"1\"><b id=\"2\"/><c id=\"3\"><b id=\"4\"/></c><b id=\"5\"/></a>"
+            + "<b id=\"6\"><a id=\"7\"/></b>"
+            + "<c id=\"8\"><c id=\"9\"><b id=\"10\"/></c></c>"
+            + "<a id=\"11\"/>"
+            + "</root>";
+
+    private static XMLNode tagIndexed()
+    {
+        return XMLParser.getInstance().withTagIndex(true).parse(XML);
+    }
+
+    private static XMLNode attributeIndexed()
+    {
+        return XMLParser.getInstance().withAttributeIndex("id", "type").parse(XML);
+    }
+
+    private static List<String> ids(List<XMLNode> nodes)
+    {
+        List<String> ids = new ArrayList<>();
+        for (XMLNode node : nodes)
+        {
+            ids.add(node.getAttribute("id"));
+        }
+
+        return ids;
+    }
+
+    private static XMLNode node(String tag, String id)
+    {
+        XMLNode node = new XMLNode();
+        node.setTag(tag);
+        node.setAttribute("id", id);
+        return node;
+    }
+
+    /**
+     * Check that the lookups of every tag give the nodes of a walk, in document order.
+     */
+    private static void assertTagsIndexed(XMLNode root)
+    {
+        XMLNode copy = root.clone();
+        for (String tag : TAGS)
+        {
+            assertEquals(tag, ids(copy.getElementsByTag(tag)), ids(root.getElementsByTag(tag)));
+        }
+    }
+
+    /**
+     * Check that the lookups of every value of the indexed attributes give the nodes of a walk, in document order.
+     */
+    private static void assertAttributesIndexed(XMLNode root)
+    {
+        XMLNode copy = root.clone();
+        for (XMLNode node : copy.stream().collect(Collectors.toList()))
+        {
+            String id = node.getAttribute("id");
+            if (id != null)
+            {
+                assertEquals(id, ids(copy.getElementsByAttribute("id", id)), ids(root.getElementsByAttribute("id", id)));
+                assertEquals(id, root.getElementById(id).getAttribute("id"));
+            }
+
+            String type = node.getAttribute("type");
+            if (type != null)
+            {
+                assertEquals(type, ids(copy.getElementsByAttribute("type", type)),
+                        ids(root.getElementsByAttribute("type", type)));
+            }
+        }
+    }
+
+    @Test
+    public void theParsedTreeIsIndexed()
+    {
+        XMLNode root = tagIndexed();
+        assertEquals("[2, 4, 5, 6, 10]", ids(root.getElementsByTag("b")).toString());
+        assertTagsIndexed(root);
+    }
+
+    @Test
+    public void aRenamedNodeMovesToItsNewTag()
+    {
+        XMLNode root = tagIndexed();
+        XMLNode node = root.getElementById("6");
+        node.setTag("d");
+        assertEquals("[2, 4, 5, 10]", ids(root.getElementsByTag("b")).toString());
+        assertEquals("[6]", ids(root.getElementsByTag("d")).toString());
+
+        // renamed back, the node is put at its place in document order
+        node.setTag("b");
+        assertEquals("[2, 4, 5, 6, 10]", ids(root.getElementsByTag("b")).toString());
+        assertTagsIndexed(root);
+    }
+
+    @Test
+    public void aCreatedChildIsIndexedInDocumentOrder()
+    {
+        XMLNode root = tagIndexed();
+        XMLNode child = root.getElementById("1").createAndAppendChild("b", "text");
+        child.setAttribute("id", "12");
+
+        // the new node is before the nodes of the next children of the root
+        assertEquals("[2, 4, 5, 12, 6, 10]", ids(root.getElementsByTag("b")).toString());
+        assertTagsIndexed(root);
+
+        // a node appended at the end of the document is already in order
+        root.createAndAppendChild("b", "last").setAttribute("id", "13");
+        assertEquals("[2, 4, 5, 12, 6, 10, 13]", ids(root.getElementsByTag("b")).toString());
+    }
+
+    @Test
+    public void anAppendedSubtreeIsIndexedWithItsDescendants()
+    {
+        XMLNode root = tagIndexed();
+        XMLNode subtree = node("d", "20");
+        subtree.appendChild(node("b", "21"));
+        subtree.appendChild(node("d", "22").appendChild(node("b", "23")));
+
+        root.getElementById("8").appendChild(subtree);
+        assertEquals("[20, 22]", ids(root.getElementsByTag("d")).toString());
+        assertEquals("[2, 4, 5, 6, 10, 21, 23]", ids(root.getElementsByTag("b")).toString());
+        assertTagsIndexed(root);
+    }
+
+    @Test
+    public void aRemovedChildLeavesTheIndexWithItsDescendants()
+    {
+        XMLNode root = tagIndexed();
+        XMLNode removed = root.getElementById("1").removeChildAt(1);
+        assertEquals("3", removed.getAttribute("id"));
+        assertEquals("[2, 5, 6, 10]", ids(root.getElementsByTag("b")).toString());
+        assertEquals("[8, 9]", ids(root.getElementsByTag("c")).toString());
+
+        // the removed nodes are not indexed anymore
+        removed.setTag("b");
+        removed.getChildren().get(0).setTag("c");
+        removed.createAndAppendChild("b", "");
+        assertTagsIndexed(root);
+        assertTrue(root.getElementsByTag("d").isEmpty());
+    }
+
+    @Test
+    public void theRemovedChildrenOfATagLeaveTheIndex()
+    {
+        XMLNode root = tagIndexed();
+        assertEquals(2, root.getElementById("1").removeChildrenByTag("b").size());
+        assertEquals("[4, 6, 10]", ids(root.getElementsByTag("b")).toString());
+
+        assertEquals(1, root.removeChildrenByTag("c").size());
+        assertEquals("[4, 6]", ids(root.getElementsByTag("b")).toString());
+        assertEquals("[3]", ids(root.getElementsByTag("c")).toString());
+        assertTagsIndexed(root);
+    }
+
+    @Test
+    public void theRemovedSiblingsOfATagLeaveTheIndex()
+    {
+        XMLNode root = tagIndexed();
+        List<XMLNode> removed = root.getElementById("6").removeSiblingsByTag("a");
+        assertEquals("[1, 11]", ids(removed).toString());
+        assertEquals("[7]", ids(root.getElementsByTag("a")).toString());
+        assertEquals("[6, 10]", ids(root.getElementsByTag("b")).toString());
+        assertTagsIndexed(root);
+    }
+
+    @Test
+    public void theIndexFollowsRandomChanges()
+    {
+        Random random = new Random(11);
+        XMLNode root = tagIndexed();
+        int id = 100;
+        for (int i = 0; i < 2000; ++i)
+        {
+            List<XMLNode> nodes = root.stream().collect(Collectors.toList());
+            XMLNode node = nodes.get(random.nextInt(nodes.size()));
+            String tag = TAGS[1 + random.nextInt(TAGS.length - 1)];
+            switch (random.nextInt(6))
+            {
+                case 0:
+                    if (node != root)
+                    {
+                        node.setTag(tag);
+                    }
+                    break;
+                case 1:
+                    node.createAndAppendChild(tag, "").setAttribute("id", Integer.toString(id++));
+                    break;
+                case 2:
+                    node.appendChild(node(tag, Integer.toString(id++)).appendChild(node(tag, Integer.toString(id++))));
+                    break;
+                case 3:
+                    node.removeChildAt(random.nextInt(node.getChildren().size() + 1));
+                    break;
+                case 4:
+                    node.removeChildrenByTag(tag);
+                    break;
+                default:
+                    if (node != root)
+                    {
+                        node.removeSiblingsByTag(tag);
+                    }
+                    break;
+            }
+
+            if (i % 100 == 0)
+            {
+                assertTagsIndexed(root);
+            }
+        }
+
+        assertTagsIndexed(root);
+    }
+
+    @Test
+    public void aChangedValueMovesTheNodeToItsNewValue()
+    {
+        XMLNode root = attributeIndexed();
+        XMLNode node = root.getElementById("6");
+        node.setAttribute("id", "60");
+        assertNull(root.getElementById("6"));
+        assertEquals("b", root.getElementById("60").getTag());
+
+        node.setAttribute("type", "x");
+        root.getElementById("2").setAttribute("type", "x");
+        root.getElementById("10").setAttribute("type", "y");
+        assertEquals("[2, 60]", ids(root.getElementsByAttribute("type", "x")).toString());
+        assertEquals("[10]", ids(root.getElementsByAttribute("type", "y")).toString());
+
+        root.getElementById("10").setAttribute("type", "x");
+        assertEquals("[2, 60, 10]", ids(root.getElementsByAttribute("type", "x")).toString());
+        assertTrue(root.getElementsByAttribute("type", "y").isEmpty());
+        assertAttributesIndexed(root);
+    }
+
+    @Test
+    public void aRemovedAttributeLeavesTheIndex()
+    {
+        XMLNode root = attributeIndexed();
+        assertEquals("5", root.getElementById("5").removeAttribute("id"));
+        assertNull(root.getElementById("5"));
+        assertNull(root.getElementById("1").removeAttribute("type"));
+        assertAttributesIndexed(root);
+    }
+
+    @Test
+    public void theFirstNodeOfAValueIsTheFirstInDocumentOrder()
+    {
+        XMLNode root = attributeIndexed();
+        root.getElementById("11").setAttribute("type", "x");
+
+        // a node inserted before the indexed ones puts the values back in document order
+        XMLNode child = root.getElementById("3").createAndAppendChild("d", "");
+        child.setAttribute("type", "x");
+        child.setAttribute("id", "11");
+        assertEquals("d", root.getElementById("11").getTag());
+        List<XMLNode> nodes = root.getElementsByAttribute("type", "x");
+        assertEquals(2, nodes.size());
+        assertSame(child, nodes.get(0));
+        assertEquals("a", nodes.get(1).getTag());
+        assertEquals(nodes, root.getElementsByAttribute("id", "11"));
+
+        root.getElementById("1").removeChildAt(1);
+        assertEquals("a", root.getElementById("11").getTag());
+        assertAttributesIndexed(root);
+    }
+
+    @Test
+    public void theValuesFollowTheMovedSubtrees()
+    {
+        XMLNode root = attributeIndexed();
+        XMLNode removed = root.getElementById("8").removeChildAt(0);
+        assertNull(root.getElementById("9"));
+        assertNull(root.getElementById("10"));
+
+        // the removed nodes are not indexed anymore
+        removed.setAttribute("id", "90");
+        removed.getChildren().get(0).setAttribute("type", "x");
+        assertNull(root.getElementById("90"));
+        assertTrue(root.getElementsByAttribute("type", "x").isEmpty());
+
+        // appended again, they are indexed with their new values
+        root.getElementById("1").appendChild(removed);
+        assertEquals("c", root.getElementById("90").getTag());
+        assertEquals("[10]", ids(root.getElementsByAttribute("type", "x")).toString());
+        assertEquals("1", root.getElementById("10").getParent().getParent().getAttribute("id"));
+        assertAttributesIndexed(root);
+
+        root.getElementById("6").removeSiblingsByTag("a");
+        assertNull(root.getElementById("90"));
+        assertNull(root.getElementById("11"));
+        assertAttributesIndexed(root);
+    }
+}
@@ -0,0 +1,128 @@
+package com.insa.xml;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * The lazy trees, compared to the trees built by the parser.
+ * @author Dorian Terbah
+ */
+public class LazyDocumentTest
+{
+    private static final String XML = "<?xml version=\"1.0\"?>"
+            + "<root id=\"r\">root text<a id=\"1\"><b id=\"2\">b text</b><!-- <a/> --><b id=\"3\"/></a>"
+            + "<![CDATA[<a>]]><c id=\"4\"><a id=\"5\"/></c></root>"
+            + "<!-- between the top level nodes -->"
+            + "<a id=\"6\">second<b id=\"7\"/></a>"
+            + "text after the top level node"
+            + "<c id=\"8\"/>"
+            + "<b id=\"9\"><a id=\"10\"/></b>";
+
+    private static XMLNode eager()
+    {
+        return XMLParser.getInstance().parse(XML);
+    }
+
+    private static XMLNode lazy()
+    {
+        return XMLParser.getInstance().withLazyNodes(true).parse(XML);
+    }
+
+    private static List<String> topLevel(XMLNode root)
+    {
+        List<String> nodes = new ArrayList<>();
+        for (XMLNode node = root; node != null; node = node.next())
+        {
+            nodes.add(node.toString());
+        }
+
+        return nodes;
+    }
+
+    private static List<String> ids(List<XMLNode> nodes)
+    {
+        List<String> ids = new ArrayList<>();
+        for (XMLNode node : nodes)
+        {
+            ids.add(node.getAttribute("id"));
+        }
+
+        return ids;
+    }
+
+    @Test
+    public void theTopLevelNodesAreLinkedAsSiblings()
+    {
+        XMLNode lazy = lazy();
+        assertEquals(topLevel(eager()), topLevel(lazy));
+        assertEquals(4, topLevel(lazy).size());
+        assertEquals(0, lazy.next().next().level);
+        assertNull(lazy.next().next().next().next());
+    }
+
+    @Test
+    public void theSearchesFindTheTopLevelSiblings()
+    {
+        XMLNode eager = eager();
+        XMLNode lazy = lazy();
+        for (String tag : new String[] { "root", "a", "b", "c", "d" })
+        {
+            assertEquals(tag, ids(eager.getElementsByTag(tag)), ids(lazy.getElementsByTag(tag)));
+        }
+
+        assertEquals(ids(eager.getElementsByAttribute("id")), ids(lazy.getElementsByAttribute("id")));
+        assertEquals("b", lazy().getElementById("9").getTag());
+    }
+
+    @Test
+    public void theIndexOfALazyTreeHoldsTheTopLevelSiblings()
+    {
+        XMLNode eager = eager();
+        XMLNode lazy = lazy();
+        eager.buildTagIndex();
+        lazy.buildTagIndex();
+        lazy.buildAttributeIndex("id");
+        for (String tag : new String[] { "root", "a", "b", "c" })
+        {
+            assertEquals(tag, ids(eager.getElementsByTag(tag)), ids(lazy.getElementsByTag(tag)));
+        }
+
+        assertEquals("c", lazy.getElementById("8").getTag());
+        assertEquals(topLevel(eager), topLevel(lazy));
+    }
+
+    @Test
+    public void aReplacedSiblingIsNotReadFromTheSource()
+    {
+        XMLNode lazy = lazy();
+        XMLNode sibling = new XMLNode();
+        sibling.setTag("d");
+        lazy.setNextSibling(sibling);
+
+        assertEquals(2, topLevel(lazy).size());
+        assertEquals("d", lazy.next().getTag());
+        assertNull(sibling.next());
+    }
+
+    @Test
+    public void aRemovedTopLevelNodeKeepsTheNextOnesLinked()
+    {
+        XMLNode lazy = lazy();
+        XMLNode second = lazy.next();
+        assertEquals(1, lazy.removeSiblingsByTag("c").size());
+        assertEquals("b", second.next().getTag());
+        assertEquals("9", second.next().getAttribute("id"));
+    }
+
+    @Test
+    public void aSelfClosingRootHasSiblings()
+    {
+        XMLNode lazy = XMLParser.getInstance().withLazyNodes(true).parse("<a/><b>text</b>");
+        assertEquals(topLevel(XMLParser.getInstance().parse("<a/><b>text</b>")), topLevel(lazy));
+    }
+}
@@ -0,0 +1,98 @@
+package com.insa.xml;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * The documents parsed by parts, compared to the documents parsed on one thread.
+ * @author Dorian Terbah
+ */
+public class ParallelDocumentTest
+{
+    private static final int RECORDS = 20000;
+
+    private static ForkJoinPool pool;
+
+    @BeforeClass
+    public static void setUp()
+    {
+        pool = new ForkJoinPool(4);
+    }
+
+    @AfterClass
+    public static void tearDown()
+    {
+        pool.shutdown();
+    }
+
+    /**
+     * Generate a document bigger than ParallelDocument.MIN_SIZE, with texts
+     * between the records at the given indexes.
+     */
+    private static String generate(int... texts)
+    {
+        StringBuilder builder = new StringBuilder("<root id=\"r\">");
+        int next = 0;
+        for (int i = 0; i < RECORDS; ++i)
+        {
+            if (next < texts.length && texts[next] == i)
+            {
+                builder.append("text before ").append(i);
+                ++next;
+            }
+
+            builder.append("<record id=\"").append(i).append("\"><name>name ").append(i)
+                    .append("</name><value>").append(i * 7).append("</value>")
+                    .append("<!-- padding of the record -->").append("</record>\n");
+        }
+
+        return builder.append("</root>").toString();
+    }
+
+    private static void assertSameTree(String xml)
+    {
+        XMLParser parser = XMLParser.getInstance();
+        XMLNode expected = parser.parse(xml);
+        XMLNode actual = new ParallelDocument(parser, xml).parse(pool);
+
+        assertNotNull(actual);
+        assertEquals(expected.getText(), actual.getText());
+        assertEquals(expected.getChildren().size(), actual.getChildren().size());
+        assertEquals(expected.toString(), actual.toString());
+        assertEquals(expected.toString(), parser.withForkJoinPool(pool).parse(xml).toString());
+    }
+
+    @Test
+    public void aDocumentWithoutTextIsTheSame()
+    {
+        assertSameTree(generate());
+    }
+
+    @Test
+    public void theTextBeforeTheRecordsGoesToTheRoot()
+    {
+        assertSameTree(generate(0));
+    }
+
+    @Test
+    public void theTextBetweenTheRecordsOfAPartGoesToTheRoot()
+    {
+        // the records 1 to 5 are in the first part, the text must not be dropped with it
+        assertSameTree(generate(3));
+        assertSameTree(generate(RECORDS / 2, RECORDS / 2 + 1, RECORDS - 1));
+    }
+
+    @Test
+    public void onlyTheFirstTextIsKept()
+    {
+        String xml = generate(17, 9000, 15000);
+        assertSameTree(xml);
+        assertEquals("text before 17", XMLParser.getInstance().withForkJoinPool(pool).parse(xml).getText());
+    }
+}
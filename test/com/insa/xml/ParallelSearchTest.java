@@ -0,0 +1,111 @@
+package com.insa.xml;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * The parallel searches, compared to the searches on one thread on a random tree.
+ * @author Dorian Terbah
+ */
+public class ParallelSearchTest
+{
+    private static final String[] TAGS = { "a", "b", "c", "item" };
+
+    private static ForkJoinPool pool;
+    private static XMLNode root;
+
+    @BeforeClass
+    public static void setUp()
+    {
+        pool = new ForkJoinPool(4);
+        root = XMLParser.getInstance().parse(generate(new Random(17), 400000));
+    }
+
+    @AfterClass
+    public static void tearDown()
+    {
+        pool.shutdown();
+    }
+
+    /**
+     * Generate a tree of random shape: the depth of the elements is a random walk,
+     * so the tree has wide parts and deep parts.
+     */
+    private static String generate(Random random, int elements)
+    {
+        StringBuilder builder = new StringBuilder("<root>");
+        Deque<String> open = new ArrayDeque<>();
+        for (int i = 1; i < elements; ++i)
+        {
+            while (!open.isEmpty() && random.nextInt(3) == 0)
+            {
+                builder.append("</").append(open.pop()).append('>');
+            }
+
+            String tag = TAGS[random.nextInt(TAGS.length)];
+            builder.append('<').append(tag);
+            if (random.nextInt(4) == 0)
+            {
+                builder.append(" id=\"").append(i).append('"');
+            }
+
+            if (random.nextBoolean())
+            {
+                builder.append("/>");
+            } else
+            {
+                builder.append('>');
+                open.push(tag);
+            }
+        }
+
+        while (!open.isEmpty())
+        {
+            builder.append("</").append(open.pop()).append('>');
+        }
+
+        return builder.append("</root>").toString();
+    }
+
+    @Test
+    public void theTagsAreFoundAsOnOneThread()
+    {
+        int count = 0;
+        for (String tag : TAGS)
+        {
+            List<XMLNode> nodes = root.getElementsByTag(tag);
+            assertEquals(nodes, root.getElementsByTag(tag, pool));
+            count += nodes.size();
+        }
+
+        assertEquals(399999, count);
+        assertEquals(root.getElementsByTag("none"), root.getElementsByTag("none", pool));
+    }
+
+    @Test
+    public void theAttributesAreFoundAsOnOneThread()
+    {
+        List<XMLNode> nodes = root.getElementsByAttribute("id");
+        assertTrue(nodes.size() > 90000);
+        assertEquals(nodes, root.getElementsByAttribute("id", pool));
+    }
+
+    @Test
+    public void aSearchFromAChildCoversItsNextSiblings()
+    {
+        List<XMLNode> children = root.getChildren();
+        XMLNode child = children.get(children.size() / 2);
+        assertEquals(child.getElementsByTag("item"), child.getElementsByTag("item", pool));
+        assertEquals(child.getElementsByAttribute("id"), child.getElementsByAttribute("id", pool));
+    }
+}
@@ -0,0 +1,58 @@
+package com.insa.xml;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+/**
+ * The names and the values cached by a reused context, when the documents
+ * come from sources of different kinds.
+ * @author Dorian Terbah
+ */
+public class SymbolCacheTest
+{
+    // e acute is C3 A9 in UTF-8, the same units as the two chars of its mojibake
+    private static final String E_ACUTE = "\u00e9";
+    private static final String MOJIBAKE = "\u00c3\u00a9";
+
+    private static XMLNode parseBytes(XMLParser parser, String xml) throws IOException
+    {
+        return parser.parse(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void aCachedValueIsNotReturnedForTheBytesOfAnotherValue() throws IOException
+    {
+        XMLParser parser = XMLParser.getInstance().withReusedContexts(true).withValueCache(true);
+
+        assertEquals(MOJIBAKE, parser.parse("<a x=\"" + MOJIBAKE + "\"/>").getAttribute("x"));
+        assertEquals(E_ACUTE, parseBytes(parser, "<a x=\"" + E_ACUTE + "\"/>").getAttribute("x"));
+        assertEquals(MOJIBAKE, parser.parse("<a x=\"" + MOJIBAKE + "\"/>").getAttribute("x"));
+    }
+
+    @Test
+    public void aCachedNameIsNotReturnedForTheBytesOfAnotherName() throws IOException
+    {
+        XMLParser parser = XMLParser.getInstance().withReusedContexts(true).withSymbolTable(new SymbolTable());
+
+        assertEquals(MOJIBAKE, parser.parse("<" + MOJIBAKE + "/>").getTag());
+        XMLNode node = parseBytes(parser, "<" + E_ACUTE + " " + E_ACUTE + "=\"1\"/>");
+        assertEquals(E_ACUTE, node.getTag());
+        assertEquals("1", node.getAttribute(E_ACUTE));
+    }
+
+    @Test
+    public void aCachedTextIsReturnedForTheSameText() throws IOException
+    {
+        XMLParser parser = XMLParser.getInstance().withReusedContexts(true).withValueCache(true);
+
+        XMLNode first = parseBytes(parser, "<a>" + E_ACUTE + "t" + E_ACUTE + "</a>");
+        XMLNode second = parseBytes(parser, "<b>" + E_ACUTE + "t" + E_ACUTE + "</b>");
+        assertEquals(E_ACUTE + "t" + E_ACUTE, second.getText());
+        assertEquals(first.getText(), second.getText());
+    }
+}
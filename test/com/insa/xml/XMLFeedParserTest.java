@@ -0,0 +1,141 @@
+package com.insa.xml;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * The documents fed piece by piece, compared to the documents parsed at once.
+ * @author Dorian Terbah
+ */
+public class XMLFeedParserTest
+{
+    private static final String XML = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+            + "<catalog lang=\"fr\">catalog text"
+            + "<!-- a comment with a <tag> and a -- inside -->"
+            + "<book id=\"b1\" title=\"Les Mis\u00e9rables &amp; co\" note=\"a > b\">"
+            + "<author>Victor Hugo</author>"
+            + "<summary><![CDATA[<not a tag> & \u00e9t\u00e9]]></summary>"
+            + "<empty/>"
+            + "</book>"
+            + "<book id=\"b2\" title=\"\u65e5\u672c\"><author>\u00c9mile Zola</author></book>"
+            + "</catalog>";
+
+    private static final byte[] BYTES = XML.getBytes(StandardCharsets.UTF_8);
+
+    private static String expected()
+    {
+        return XMLParser.getInstance().parse(XML).toString();
+    }
+
+    private static XMLFeedParser parser()
+    {
+        return XMLParser.getInstance().createFeedParser(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Feed the bytes of the document cut at the given positions.
+     */
+    private static String feedBytes(int... cuts)
+    {
+        XMLFeedParser parser = parser();
+        int start = 0;
+        for (int cut : cuts)
+        {
+            parser.feed(ByteBuffer.wrap(BYTES, start, cut - start));
+            start = cut;
+        }
+
+        parser.feed(ByteBuffer.wrap(BYTES, start, BYTES.length - start));
+        parser.end();
+        assertTrue(parser.isEnded());
+        return parser.getRoot().toString();
+    }
+
+    private static int byteIndexOf(String text, int offset)
+    {
+        int index = XML.indexOf(text);
+        assertTrue(text, index >= 0);
+        return XML.substring(0, index + offset).getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    @Test
+    public void aDocumentFedByteByByteIsTheSame()
+    {
+        int[] cuts = new int[BYTES.length - 1];
+        for (int i = 0; i < cuts.length; ++i)
+        {
+            cuts[i] = i + 1;
+        }
+
+        assertEquals(expected(), feedBytes(cuts));
+    }
+
+    @Test
+    public void aDocumentFedByRandomChunksIsTheSame()
+    {
+        Random random = new Random(7);
+        for (int run = 0; run < 200; ++run)
+        {
+            int[] cuts = new int[BYTES.length];
+            int count = 0;
+            for (int cut = 1 + random.nextInt(16); cut < BYTES.length; cut += 1 + random.nextInt(16))
+            {
+                cuts[count++] = cut;
+            }
+
+            assertEquals(expected(), feedBytes(Arrays.copyOf(cuts, count)));
+        }
+    }
+
+    @Test
+    public void theTokensCutInTheMiddleAreReadAgain()
+    {
+        String expected = expected();
+
+        // in a tag name, in an attribute value, in a comment
+        assertEquals(expected, feedBytes(byteIndexOf("<book id", 3)));
+        assertEquals(expected, feedBytes(byteIndexOf("\"b1\"", 2)));
+        assertEquals(expected, feedBytes(byteIndexOf("note=\"a > b\"", 8)));
+        assertEquals(expected, feedBytes(byteIndexOf("<!-- a comment", 2)));
+        assertEquals(expected, feedBytes(byteIndexOf("a -- inside", 3)));
+        assertEquals(expected, feedBytes(byteIndexOf("inside -->", 8)));
+
+        // at the boundaries of a CDATA section, and in its delimiters
+        assertEquals(expected, feedBytes(byteIndexOf("<![CDATA[", 0)));
+        assertEquals(expected, feedBytes(byteIndexOf("<![CDATA[", 4)));
+        assertEquals(expected, feedBytes(byteIndexOf("<![CDATA[", 9)));
+        assertEquals(expected, feedBytes(byteIndexOf("]]>", 0)));
+        assertEquals(expected, feedBytes(byteIndexOf("]]>", 1)));
+        assertEquals(expected, feedBytes(byteIndexOf("]]>", 3)));
+
+        // in the bytes of a char
+        assertEquals(expected, feedBytes(byteIndexOf("\u00e9rables", 0) + 1));
+        assertEquals(expected, feedBytes(byteIndexOf("\u65e5", 0) + 1, byteIndexOf("\u65e5", 0) + 2));
+
+        // several cuts in the same token
+        assertEquals(expected, feedBytes(byteIndexOf("title=", 1), byteIndexOf("title=", 4),
+                byteIndexOf("Hugo", 1), byteIndexOf("<![CDATA[", 3), byteIndexOf("]]>", 2)));
+    }
+
+    @Test
+    public void aDocumentCutAnywhereIsTheSame()
+    {
+        String expected = expected();
+        char[] chars = XML.toCharArray();
+        for (int cut = 0; cut <= chars.length; ++cut)
+        {
+            XMLFeedParser parser = parser();
+            parser.feed(chars, 0, cut);
+            parser.feed(chars, cut, chars.length - cut);
+            parser.end();
+            assertEquals("cut at " + cut, expected, parser.getRoot().toString());
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.insa.xml;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * The evaluation of the compiled paths.
+ * @author Dorian Terbah
+ */
+public class XMLPathTest
+{
+    private static List<String> ids(List<XMLNode> nodes)
+    {
+        List<String> ids = new ArrayList<>();
+        for (XMLNode node : nodes)
+        {
+            ids.add(node.getAttribute("id"));
+        }
+
+        return ids;
+    }
+
+    private static XMLNode parse(String xml)
+    {
+        return XMLParser.getInstance().parse(xml);
+    }
+
+    @Test
+    public void selectsTheChildrenStepByStep()
+    {
+        XMLNode root = parse("<Company><Employee id=\"1\" salary=\"6000\"><Email>a</Email></Employee>"
+                + "<Employee id=\"2\" salary=\"4000\"><Email>b</Email></Employee></Company>");
+
+        List<XMLNode> emails = root.select("/Company/Employee[@salary>5000]/Email");
+        assertEquals(1, emails.size());
+        assertEquals("a", emails.get(0).getText());
+        assertEquals("2", root.selectFirst("Employee[last()]").getAttribute("id"));
+    }
+
+    @Test
+    public void nestedMatchesOfADescendantStepAreWalkedOnce()
+    {
+        XMLNode root = parse("<r><a><a><b/></a></a></r>");
+
+        assertEquals(1, root.select("//a//b").size());
+        assertEquals(1, root.select("//*//b").size());
+        assertEquals(1, root.select("//a/a//b").size());
+        assertEquals(2, root.select("//a").size());
+    }
+
+    @Test
+    public void nestedMatchesAreSelectedOnce()
+    {
+        XMLNode root = parse("<r><a><x><a><x><b id=\"1\"/></x></a></x></a><a><b id=\"2\"/><b id=\"3\"/></a></r>");
+
+        assertEquals(Arrays.asList("1", "2", "3"), ids(root.select("//a//b")));
+        assertEquals(1, root.select("//a/x//b").size());
+        assertEquals(2, root.select("//a//b[1]").size());
+        assertEquals(9, root.select("//*").size());
+    }
+
+    @Test
+    public void theNodesAreInDocumentOrder()
+    {
+        // breadth first, the b of id 3 would come first
+        XMLNode root = parse("<r><a><b id=\"1\"><b id=\"2\"/></b></a><b id=\"3\"/></r>");
+
+        assertEquals(Arrays.asList("1", "2", "3"), ids(root.select("//b")));
+        assertEquals(ids(root.getElementsByTag("b")), ids(root.select("//b")));
+        assertEquals("1", root.selectFirst("//b").getAttribute("id"));
+
+        // the children b of a come after the b of the nested a
+        XMLNode nested = parse("<r><a><a><b id=\"1\"/></a><b id=\"2\"/></a></r>");
+        assertEquals(Arrays.asList("1", "2"), ids(nested.select("//a/b")));
+        assertEquals("1", nested.selectFirst("//a/b").getAttribute("id"));
+        assertEquals(Arrays.asList("1"), ids(nested.select("/r/a/a/b")));
+    }
+
+    @Test
+    public void aDescendantStepFindsTheNodesOfGetElementsByTag()
+    {
+        StringBuilder builder = new StringBuilder("<root>");
+        Random random = new Random(5);
+        int depth = 0;
+        for (int i = 0; i < 5000; ++i)
+        {
+            if (depth > 0 && random.nextInt(3) == 0)
+            {
+                builder.append("</item>");
+                --depth;
+            } else if (random.nextBoolean())
+            {
+                builder.append("<item id=\"").append(i).append("\">");
+                ++depth;
+            } else
+            {
+                builder.append("<item id=\"").append(i).append("\"/>");
+            }
+        }
+
+        for (; depth > 0; --depth)
+        {
+            builder.append("</item>");
+        }
+
+        XMLNode root = parse(builder.append("</root>").toString());
+        List<XMLNode> nodes = root.getElementsByTag("item");
+        assertEquals(nodes, root.select("//item"));
+        assertEquals(nodes, root.select("/root//item"));
+        assertSame(nodes.get(0), root.selectFirst("//item"));
+    }
+
+    @Test
+    public void thePositionsAreCountedAmongTheSiblings()
+    {
+        XMLNode root = parse("<r><b id=\"1\"><b id=\"2\"/><b id=\"3\"/></b><c><b id=\"4\"/></c><b id=\"5\"/></r>");
+
+        assertEquals(Arrays.asList("1", "2", "4"), ids(root.select("//b[1]")));
+        assertEquals(Arrays.asList("3", "4", "5"), ids(root.select("//b[last()]")));
+        assertEquals(Arrays.asList("5"), ids(root.select("/r/b[2]")));
+    }
+
+    @Test
+    public void theFirstNodeStopsTheWalk()
+    {
+        XMLNode root = parse("<r><a><a><b id=\"1\"/></a></a><a><b id=\"2\"/></a></r>");
+
+        XMLNode first = root.selectFirst("//a//b");
+        assertSame(root.select("//a//b").get(0), first);
+        assertEquals("1", first.getAttribute("id"));
+    }
+}
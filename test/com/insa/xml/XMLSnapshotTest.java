@@ -0,0 +1,228 @@
+package com.insa.xml;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * The trees saved by XMLSnapshot and loaded back, compared to the trees of XMLParser.
+ * @author Dorian Terbah
+ */
+public class XMLSnapshotTest
+{
+    private static final String DOCUMENT = "<Company name=\"Infoteria\">"
+            + "<Employee id=\"1\" salary=\"6000\"><FirstName>Tim</FirstName><Email/></Employee>"
+            + "<Employee id=\"2\"><FirstName>Ren\u00e9e</FirstName><City>K\u00f8benhavn \u65e5\u672c</City></Employee>"
+            + "<Note lang=\"\u00e9\u00e8\">caf\u00e9 \ud83d\ude00</Note>"
+            + "<Empty/>"
+            + "</Company>";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static byte[] save(XMLNode node) throws IOException
+    {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        XMLSnapshot.save(node, Channels.newChannel(output));
+        return output.toByteArray();
+    }
+
+    private static XMLNode load(byte[] snapshot) throws IOException
+    {
+        return XMLSnapshot.load(Channels.newChannel(new ByteArrayInputStream(snapshot)));
+    }
+
+    private XMLNode loadFile(byte[] snapshot) throws IOException
+    {
+        Path path = this.folder.newFile().toPath();
+        Files.write(path, snapshot);
+        return XMLSnapshot.load(path);
+    }
+
+    /**
+     * Compare two trees node by node: tags, texts, attributes in order, self closing flags and levels.
+     */
+    private static void assertSameTree(XMLNode expected, XMLNode actual)
+    {
+        assertEquals(expected.getTag(), actual.getTag());
+        assertEquals(expected.getText(), actual.getText());
+        assertEquals(expected.isSelfClosing(), actual.isSelfClosing());
+        assertEquals(expected.level, actual.level);
+
+        AttributeList expectedAttributes = expected.getAttributeList();
+        AttributeList actualAttributes = actual.getAttributeList();
+        int count = expectedAttributes != null ? expectedAttributes.size() : 0;
+        assertEquals(count, actualAttributes != null ? actualAttributes.size() : 0);
+        for (int i = 0; i < count; ++i)
+        {
+            assertEquals(expectedAttributes.get(i).name, actualAttributes.get(i).name);
+            assertEquals(expectedAttributes.get(i).value, actualAttributes.get(i).value);
+        }
+
+        List<XMLNode> expectedChildren = expected.getChildren();
+        List<XMLNode> actualChildren = actual.getChildren();
+        assertEquals(expectedChildren.size(), actualChildren.size());
+        for (int i = 0; i < expectedChildren.size(); ++i)
+        {
+            XMLNode child = actualChildren.get(i);
+            assertEquals(actual, child.getParent());
+            assertEquals(i > 0 ? actualChildren.get(i - 1) : null, child.previous());
+            assertSameTree(expectedChildren.get(i), child);
+        }
+    }
+
+    @Test
+    public void aTreeIsLoadedAsParsed() throws IOException
+    {
+        XMLNode root = XMLParser.getInstance().parse(DOCUMENT);
+        byte[] snapshot = save(root);
+
+        XMLNode loaded = load(snapshot);
+        assertSameTree(root, loaded);
+        assertEquals(root.toString(), loaded.toString());
+        assertSameTree(root, this.loadFile(snapshot));
+    }
+
+    @Test
+    public void theAttributesTheTextsAndTheSelfClosingNodesAreKept() throws IOException
+    {
+        XMLNode loaded = load(save(XMLParser.getInstance().parse(DOCUMENT)));
+
+        assertEquals("Infoteria", loaded.getAttribute("name"));
+        XMLNode employee = loaded.getChildren().get(0);
+        assertEquals("6000", employee.getAttribute("salary"));
+        assertEquals("Tim", employee.getChildren().get(0).getText());
+        assertTrue(employee.getChildren().get(1).isSelfClosing());
+        assertTrue(loaded.getChildren().get(3).isSelfClosing());
+        assertFalse(employee.isSelfClosing());
+        assertNull(employee.next().getAttribute("salary"));
+    }
+
+    @Test
+    public void theNonAsciiContentIsKept() throws IOException
+    {
+        XMLNode root = XMLParser.getInstance().parse(DOCUMENT);
+        XMLNode loaded = this.loadFile(save(root));
+
+        XMLNode employee = loaded.getChildren().get(1);
+        assertEquals("Ren\u00e9e", employee.getChildren().get(0).getText());
+        assertEquals("K\u00f8benhavn \u65e5\u672c", employee.getChildren().get(1).getText());
+        XMLNode note = loaded.getChildren().get(2);
+        assertEquals("caf\u00e9 \ud83d\ude00", note.getText());
+        assertEquals("\u00e9\u00e8", note.getAttribute("lang"));
+    }
+
+    @Test
+    public void aDocumentFromABigFileIsLoadedAsParsed() throws IOException
+    {
+        StringBuilder builder = new StringBuilder("<root>");
+        for (int i = 0; i < 20000; ++i)
+        {
+            builder.append("<item id=\"").append(i).append("\" v=\"\u00e9").append(i % 7).append("\">text ")
+                   .append(i).append("<sub/></item>");
+        }
+
+        XMLNode root = XMLParser.getInstance().parse(builder.append("</root>").toString());
+        byte[] snapshot = save(root);
+        assertSameTree(root, load(snapshot));
+        assertSameTree(root, this.loadFile(snapshot));
+    }
+
+    @Test
+    public void aSavedDescendantKeepsItsLevel() throws IOException
+    {
+        XMLNode root = XMLParser.getInstance().parse("<a><b><c x=\"1\"><d/></c></b></a>");
+        XMLNode c = root.getChildren().get(0).getChildren().get(0);
+
+        XMLNode loaded = this.loadFile(save(c));
+        assertSameTree(c, loaded);
+        assertNull(loaded.getParent());
+    }
+
+    @Test
+    public void theSnapshotStartsWithTheMagicAndTheVersion() throws IOException
+    {
+        byte[] snapshot = save(XMLParser.getInstance().parse("<a/>"));
+
+        assertArrayEquals("XMLS".getBytes(StandardCharsets.US_ASCII), Arrays.copyOf(snapshot, 4));
+        assertEquals(XMLSnapshot.VERSION, snapshot[4]);
+    }
+
+    @Test(expected = XMLParsingException.class)
+    public void aNewerVersionIsRejected() throws IOException
+    {
+        byte[] snapshot = save(XMLParser.getInstance().parse("<a/>"));
+        snapshot[4] = (byte) (XMLSnapshot.VERSION + 1);
+        load(snapshot);
+    }
+
+    @Test(expected = XMLParsingException.class)
+    public void anotherFileIsRejected() throws IOException
+    {
+        this.loadFile("<a/>".getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test(expected = XMLParsingException.class)
+    public void aNegativeCountOfNamesIsRejected() throws IOException
+    {
+        this.loadFile(header(0xFF, 0xFF, 0xFF, 0xFF, 0x0F));
+    }
+
+    @Test(expected = XMLParsingException.class)
+    public void aNegativeLengthOfStringIsRejected() throws IOException
+    {
+        load(header(1, 0xFF, 0xFF, 0xFF, 0xFF, 0x0F, 'a'));
+    }
+
+    @Test(expected = EOFException.class)
+    public void aHugeLengthOfStringInAFileIsTruncated() throws IOException
+    {
+        this.loadFile(header(1, 0xFF, 0xFF, 0xFF, 0xFF, 0x07, 'a'));
+    }
+
+    @Test(expected = EOFException.class)
+    public void aHugeLengthOfStringInAChannelIsTruncated() throws IOException
+    {
+        load(header(1, 0xFF, 0xFF, 0xFF, 0xFF, 0x07, 'a'));
+    }
+
+    @Test(expected = EOFException.class)
+    public void aTruncatedSnapshotIsRejected() throws IOException
+    {
+        byte[] snapshot = save(XMLParser.getInstance().parse(DOCUMENT));
+        load(Arrays.copyOf(snapshot, snapshot.length - 3));
+    }
+
+    /**
+     * @return The magic and the version, followed by some bytes
+     */
+    private static byte[] header(int... bytes)
+    {
+        byte[] snapshot = new byte[5 + bytes.length];
+        System.arraycopy("XMLS".getBytes(StandardCharsets.US_ASCII), 0, snapshot, 0, 4);
+        snapshot[4] = XMLSnapshot.VERSION;
+        for (int i = 0; i < bytes.length; ++i)
+        {
+            snapshot[5 + i] = (byte) bytes[i];
+        }
+
+        return snapshot;
+    }
+}
@@ -0,0 +1,146 @@
+package com.insa.xml;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * The comparison of the ranges of the source to Strings, by every kind of tokenizer.
+ * @author Dorian Terbah
+ */
+public class XMLTokenizerTest
+{
+    // e acute is C3 A9 in UTF-8, the same units as the two chars of its mojibake
+    private static final String E_ACUTE = "\u00e9";
+    private static final String MOJIBAKE = "\u00c3\u00a9";
+
+    private static XMLTokenizer bytes(String xml)
+    {
+        XMLByteTokenizer tokenizer = new XMLByteTokenizer();
+        tokenizer.reset(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)));
+        return tokenizer;
+    }
+
+    private static XMLTokenizer chars(String xml)
+    {
+        XMLStringTokenizer tokenizer = new XMLStringTokenizer();
+        tokenizer.reset(xml);
+        return tokenizer;
+    }
+
+    private static List<String> tokens(XMLTokenizer tokenizer)
+    {
+        List<String> tokens = new ArrayList<>();
+        int token;
+        while ((token = tokenizer.next()) != XMLTokenizer.END_OF_INPUT)
+        {
+            switch (token)
+            {
+                case XMLTokenizer.START_TAG:
+                    StringBuilder tag = new StringBuilder("<").append(tokenizer.getName());
+                    for (int i = 0; i < tokenizer.getAttributeCount(); ++i)
+                    {
+                        tag.append(' ').append(tokenizer.getAttributeName(i))
+                                .append('=').append(tokenizer.getAttributeValue(i));
+                    }
+
+                    tokens.add(tag.toString());
+                    break;
+                case XMLTokenizer.END_TAG:
+                    tokens.add("</" + tokenizer.getName());
+                    break;
+                case XMLTokenizer.TEXT:
+                    tokens.add(tokenizer.getText());
+                    break;
+                default:
+                    tokens.add("#" + token);
+            }
+        }
+
+        return tokens;
+    }
+
+    @Test
+    public void aMappedFileIsScannedAcrossTheSegments() throws IOException
+    {
+        StringBuilder xml = new StringBuilder("<?xml version=\"1.0\"?><root>");
+        for (int i = 0; i < 200; ++i)
+        {
+            xml.append("<item id=\"").append(i).append("\" name=\"").append(E_ACUTE).append(i).append("\">")
+                    .append("<!-- a comment longer than a segment -->")
+                    .append("text ").append(E_ACUTE).append(" of the item ").append(i)
+                    .append(i % 7 == 0 ? "<empty/>" : "")
+                    .append("</item>");
+        }
+
+        xml.append("</root>");
+        Path path = Files.createTempFile("mapped", ".xml");
+        try
+        {
+            Files.write(path, xml.toString().getBytes(StandardCharsets.UTF_8));
+            List<String> expected = tokens(chars(xml.toString()));
+
+            // the tiny segments end in the middle of every kind of token
+            for (int size = 1; size <= 33; size += 4)
+            {
+                try (FileChannel channel = FileChannel.open(path))
+                {
+                    XMLMappedTokenizer tokenizer = new XMLMappedTokenizer(size);
+                    tokenizer.reset(channel);
+                    assertEquals(expected, tokens(tokenizer));
+                    assertEquals(Files.size(path), tokenizer.getOffset());
+                }
+            }
+
+            XMLParser parser = new XMLParser();
+            assertEquals(parser.parse(xml.toString()).toString(),
+                    parser.withMappedFiles(true).parse(path).toString());
+        } finally
+        {
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    public void aByteSourceMatchesTheDecodedName()
+    {
+        XMLTokenizer tokenizer = bytes("<" + E_ACUTE + "></" + E_ACUTE + ">");
+        assertEquals(XMLTokenizer.START_TAG, tokenizer.next());
+        assertEquals(XMLTokenizer.END_TAG, tokenizer.next());
+
+        String expected = new String(E_ACUTE);
+        assertSame(expected, tokenizer.getName(expected));
+    }
+
+    @Test
+    public void aByteSourceDoesNotMatchTheCharsOfItsBytes()
+    {
+        XMLTokenizer tokenizer = bytes("<" + MOJIBAKE + "></" + E_ACUTE + ">");
+        assertEquals(XMLTokenizer.START_TAG, tokenizer.next());
+        assertEquals(MOJIBAKE, tokenizer.getName());
+        assertEquals(XMLTokenizer.END_TAG, tokenizer.next());
+
+        assertEquals(E_ACUTE, tokenizer.getName(MOJIBAKE));
+    }
+
+    @Test
+    public void aCharSourceMatchesNonAsciiChars()
+    {
+        XMLTokenizer tokenizer = chars("<" + MOJIBAKE + "></" + MOJIBAKE + ">");
+        assertEquals(XMLTokenizer.START_TAG, tokenizer.next());
+        assertEquals(XMLTokenizer.END_TAG, tokenizer.next());
+
+        String expected = new String(MOJIBAKE);
+        assertSame(expected, tokenizer.getName(expected));
+    }
+}